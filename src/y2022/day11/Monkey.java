@@ -3,43 +3,254 @@ package y2022.day11;
 import com.google.common.collect.Lists;
 
 import java.math.BigInteger;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * Class representing a monkey and what it is holding.
+ *
+ * Items are held as worry levels in a growable ring buffer, oldest at itemsHead, so taking from the front and throwing
+ * onto the back never allocates.  A whole turn can drain every item into an array in one go and loop over that.
+ *
+ * Once a worry level outgrows a long (part 1 never reduces them) the items move to a list of BigIntegers instead, only
+ * the BigInteger engine can work with them until they're reduced and set back.
  */
 public class Monkey {
-    private List<BigInteger> items = Lists.newLinkedList();  // Each entry is the worry level of that item
+    private long[] items = new long[16];  // Ring buffer, each entry is the worry level of that item
+    private int itemsHead = 0;            // Index of the next item to inspect
+    private int numItems = 0;
+    private List<BigInteger> oversizedItems = null;  // When set it holds every item, in order, and the ring buffer is empty
     private String operation;
+    private OperationType operationType;  // operation compiled, so inspecting an item never touches the string
+    private long operand;                 // The n in the operation, unused for SQUARE
     private Integer testDivisibleBy;
     private Integer truePassTo;
     private Integer falsePassTo;
-    private Integer numInspections = 0;
+    private long numInspections = 0;
+
+    public long takeItemForThrowing() {
+        checkItemsFitInLongs();
+        if (numItems == 0) {
+            throw new RuntimeException("Monkey has no items to throw");
+        }
 
-    public BigInteger takeItemForThrowing() {
         numInspections++;
-        return items.remove(0);
+        long worry = items[itemsHead];
+        itemsHead = (itemsHead + 1) & (items.length - 1);
+        numItems--;
+        return worry;
+    }
+
+    // Caught an item, it goes on the end of the list
+    public void addItem(long worry) {
+        if (oversizedItems != null) {
+            oversizedItems.add(BigInteger.valueOf(worry));
+            return;
+        }
+
+        if (numItems == items.length) {
+            grow(numItems + 1);
+        }
+
+        items[(itemsHead + numItems) & (items.length - 1)] = worry;
+        numItems++;
+    }
+
+    // Bulk version of addItem for count worry levels starting at from
+    public void addItems(long[] worries, int from, int count) {
+        if (oversizedItems != null) {
+            for (int i=from; i<from+count; i++) {
+                oversizedItems.add(BigInteger.valueOf(worries[i]));
+            }
+            return;
+        }
+
+        if (numItems + count > items.length) {
+            grow(numItems + count);
+        }
+
+        // Copy in at most two runs, up to the end of the buffer and then wrapping round to the start
+        int tail = (itemsHead + numItems) & (items.length - 1);
+        int firstRun = Math.min(count, items.length - tail);
+        System.arraycopy(worries, from, items, tail, firstRun);
+        System.arraycopy(worries, from + firstRun, items, 0, count - firstRun);
+        numItems += count;
+    }
+
+    // Moves every item, in order, to the front of into and leaves the monkey empty handed.  Returns how many were moved,
+    // into must have room for them all (see getNumItems).  This doesn't count as inspecting them, see addInspections
+    public int drainItems(long[] into) {
+        checkItemsFitInLongs();
+        int count = numItems;
+        int firstRun = Math.min(count, items.length - itemsHead);
+        System.arraycopy(items, itemsHead, into, 0, firstRun);
+        System.arraycopy(items, 0, into, firstRun, count - firstRun);
+
+        itemsHead = 0;
+        numItems = 0;
+        return count;
+    }
+
+    public void clearItems() {
+        itemsHead = 0;
+        numItems = 0;
+        oversizedItems = null;
+    }
+
+    // Replaces every item, they go back in the ring buffer if they all fit in a long
+    public void setItemsAsBigIntegers(Collection<BigInteger> worries) {
+        clearItems();
+        for (BigInteger worry : worries) {
+            if (worry.bitLength() >= Long.SIZE) {
+                oversizedItems = Lists.newArrayList(worries);
+                return;
+            }
+        }
+
+        for (BigInteger worry : worries) {
+            addItem(worry.longValue());
+        }
+    }
+
+    private void checkItemsFitInLongs() {
+        if (oversizedItems != null) {
+            throw new RuntimeException("Monkey is holding worry levels too big for a long, reduce them first");
+        }
+    }
+
+    // Capacity stays a power of two so wrapping round is just a mask
+    private void grow(int needed) {
+        int count = numItems;
+        long[] grown = new long[Integer.highestOneBit(needed - 1) << 1];
+        drainItems(grown);
+        items = grown;
+        numItems = count;
+    }
+
+    // For engines that track the items themselves and just report how many this monkey looked at
+    public void addInspections(long inspections) {
+        numInspections += inspections;
     }
 
     // Getters / Setters below
-    public Integer getNumInspections() {
+    public long getNumInspections() {
         return numInspections;
     }
 
-    public List<BigInteger> getItems() {
-        return items;
+    public int getNumItems() {
+        return oversizedItems != null ? oversizedItems.size() : numItems;
+    }
+
+    public boolean hasOversizedItems() {
+        return oversizedItems != null;
     }
 
-    public void setItems(List<BigInteger> items) {
-        this.items = items;
+    // Copy of the worry levels in the order they'll be inspected
+    public long[] getItems() {
+        checkItemsFitInLongs();
+        long[] copy = new long[numItems];
+        for (int i=0; i<numItems; i++) {
+            copy[i] = items[(itemsHead + i) & (items.length - 1)];
+        }
+        return copy;
+    }
+
+    // Same as getItems, but works whatever size the worry levels have got to
+    public List<BigInteger> getItemsAsBigIntegers() {
+        if (oversizedItems != null) {
+            return Lists.newArrayList(oversizedItems);
+        }
+
+        List<BigInteger> copy = Lists.newArrayListWithCapacity(numItems);
+        for (long worry : getItems()) {
+            copy.add(BigInteger.valueOf(worry));
+        }
+        return copy;
     }
 
     public String getOperation() {
         return operation;
     }
 
+    // eg "old * 19", "old + 6", "old * old"
     public void setOperation(String operation) {
         this.operation = operation;
+
+        String[] parts = operation.split(" ");
+        String operator = parts[1];
+        String factor = parts[2];
+
+        if (operator.equals("*") && "old".equals(factor)) {
+            operationType = OperationType.SQUARE;
+        } else if (operator.equals("+") && "old".equals(factor)) {
+            operationType = OperationType.MUL_CONST;
+            operand = 2;
+        } else if (operator.equals("-") && "old".equals(factor)) {
+            operationType = OperationType.MUL_CONST;
+            operand = 0;
+        } else if (operator.equals("+")) {
+            operationType = OperationType.ADD_CONST;
+            operand = Long.parseLong(factor);
+        } else if (operator.equals("-")) {
+            operationType = OperationType.SUB_CONST;
+            operand = Long.parseLong(factor);
+        } else if (operator.equals("*")) {
+            operationType = OperationType.MUL_CONST;
+            operand = Long.parseLong(factor);
+        } else {
+            throw new RuntimeException("Operator not implemented: " + operator);
+        }
+    }
+
+    public OperationType getOperationType() {
+        return operationType;
+    }
+
+    public long getOperand() {
+        return operand;
+    }
+
+    // The new worry level once this monkey has inspected an item
+    public BigInteger applyOperation(BigInteger old) {
+        switch (operationType) {
+            case ADD_CONST:
+                return old.add(BigInteger.valueOf(operand));
+            case SUB_CONST:
+                return old.subtract(BigInteger.valueOf(operand));
+            case MUL_CONST:
+                return old.multiply(BigInteger.valueOf(operand));
+            case SQUARE:
+                return old.multiply(old);
+        }
+
+        throw new RuntimeException("Operation not implemented: " + operationType);
+    }
+
+    // Same but with old already reduced mod modulus, and the result reduced too
+    public long applyOperation(long old, long modulus) {
+        switch (operationType) {
+            case ADD_CONST:
+                return (old + operand % modulus) % modulus;
+            case SUB_CONST:
+                return Math.floorMod(old - operand % modulus, modulus);
+            case MUL_CONST:
+                return multiplyMod(old, operand % modulus, modulus);
+            case SQUARE:
+                return multiplyMod(old, old, modulus);
+        }
+
+        throw new RuntimeException("Operation not implemented: " + operationType);
+    }
+
+    // a*b mod modulus for a, b already reduced.  Below 2^31 the product always fits in a long, but check the high half
+    // of the full 128 bit product anyway and only drop to BigInteger if it really did overflow
+    static long multiplyMod(long a, long b, long modulus) {
+        long low = a * b;
+        if (Math.multiplyHigh(a, b) == 0 && low >= 0) {
+            return low % modulus;
+        }
+
+        return BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).mod(BigInteger.valueOf(modulus)).longValueExact();
     }
 
     public Integer getTestDivisibleBy() {
@@ -69,7 +280,7 @@ public class Monkey {
     @Override
     public String toString() {
         return "Monkey{" +
-                "items=" + items +
+                "items=" + getItemsAsBigIntegers() +
                 "\n  operation='" + operation + '\'' +
                 "\n  testDivisibleBy=" + testDivisibleBy +
                 "\n  truePassTo=" + truePassTo +
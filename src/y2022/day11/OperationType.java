@@ -0,0 +1,11 @@
+package y2022.day11;
+
+/**
+ * What a monkey's "new = ..." operation does to the old worry level, parsed once when the monkey is loaded
+ */
+public enum OperationType {
+    ADD_CONST,  // new = old + n
+    SUB_CONST,  // new = old - n
+    MUL_CONST,  // new = old * n  (old + old is stored as old * 2)
+    SQUARE;     // new = old * old
+}
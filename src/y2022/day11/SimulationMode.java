@@ -0,0 +1,9 @@
+package y2022.day11;
+
+/**
+ * How WorryTracker plays out the rounds, both give identical inspection counts
+ */
+public enum SimulationMode {
+    SEQUENTIAL,         // Every monkey takes its turn with all its items, round after round
+    PER_ITEM_PARALLEL;  // Follow each item on its own through every round, all the items at once across cores
+}
@@ -6,7 +6,7 @@ import utils.InputReader;
 import java.io.FileNotFoundException;
 import java.math.BigInteger;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * --- Day 11: Monkey in the Middle ---
@@ -223,6 +223,8 @@ import java.util.stream.Collectors;
  *
  */
 public class WorryTracker {
+    private static final long LONG_ENGINE_MAX_MODULUS = 1L << 31;  // Any two worry levels below this multiply within a long
+
     public static void main(String[] args) throws FileNotFoundException {
         InputReader inputReader = new InputReader();
         //List<String> monkeyInput = inputReader.loadStringsFromFile("./src/y2022/day11/SampleMonkeys.txt");
@@ -240,13 +242,7 @@ public class WorryTracker {
 
         processMonkeyThrows(monkeys, 20, true);
 
-        // Find the two most active monkeys, get the number of items inspected by each
-        Set<Integer> numInspectionsSorted = new TreeSet<>(Comparator.reverseOrder());
-        numInspectionsSorted.addAll(monkeys.stream().map(m -> m.getNumInspections()).collect(Collectors.toList()));
-
-        List<Integer> topn = numInspectionsSorted.stream().limit(2).collect(Collectors.toList());
-        System.out.println("Top inspections: " + topn.get(0) + ", " + topn.get(1));
-        System.out.println("Result: " + (topn.get(0) * topn.get(1)));
+        printMonkeyBusiness(monkeys);
     }
 
     public void doPart2(List<String> monkeyInput) {
@@ -254,78 +250,351 @@ public class WorryTracker {
 
         //System.out.println(monkeys);
 
-        processMonkeyThrows(monkeys, 10000, false);
+        processMonkeyThrows(monkeys, 10000, false, SimulationMode.PER_ITEM_PARALLEL);
 
         System.out.println(monkeys);
 
-        // Find the two most active monkeys, get the number of items inspected by each
-        Set<Integer> numInspectionsSorted = new TreeSet<>(Comparator.reverseOrder());
-        numInspectionsSorted.addAll(monkeys.stream().map(m -> m.getNumInspections()).collect(Collectors.toList()));
+        printMonkeyBusiness(monkeys);
+    }
+
+    // Find the two most active monkeys, get the number of items inspected by each
+    private void printMonkeyBusiness(List<Monkey> monkeys) {
+        long[] inspections = monkeys.stream().mapToLong(m -> m.getNumInspections()).toArray();
+
+        long[] topn = topInspections(inspections, 2);
+        System.out.println("Top inspections: " + topn[0] + ", " + topn[1]);
+        System.out.println("Result: " + monkeyBusiness(inspections));
+    }
+
+    // The two biggest inspection counts multiplied together, throws rather than overflowing
+    public static long monkeyBusiness(long[] inspections) {
+        long[] topn = topInspections(inspections, 2);
+        return Math.multiplyExact(topn[0], topn[1]);
+    }
+
+    // The k biggest counts, biggest first.  Ties are kept, two monkeys on the same count are two entries.  Only the k
+    // best so far are kept sorted, each count just gets insertion sorted into them if it beats the smallest
+    public static long[] topInspections(long[] inspections, int k) {
+        if (k < 0) {
+            throw new RuntimeException("Asked for the top " + k + " monkeys, k can't be negative");
+        } else if (k > inspections.length) {
+            throw new RuntimeException("Asked for the top " + k + " of only " + inspections.length + " monkeys");
+        } else if (k == 0) {
+            return new long[0];
+        }
+
+        long[] top = new long[k];
+        int numTop = 0;
+
+        for (long count : inspections) {
+            if (numTop == k && count <= top[k-1]) {
+                continue;
+            }
+
+            int i = numTop < k ? numTop++ : k-1;
+            while (i > 0 && top[i-1] < count) {
+                top[i] = top[i-1];
+                i--;
+            }
+            top[i] = count;
+        }
 
-        List<Integer> topn = numInspectionsSorted.stream().limit(2).collect(Collectors.toList());
-        System.out.println("Top inspections: " + topn.get(0) + ", " + topn.get(1));
-        BigInteger n1 = BigInteger.valueOf(topn.get(0));
-        BigInteger n2 = BigInteger.valueOf(topn.get(1));
-        System.out.println("Result: " + n1.multiply(n2));
+        return top;
     }
 
     // Iterates all rounds for all monkeys, passing items around.  Modifies the monkey list contents in place
+    // When we're reducing by the super modulo and it's small enough, every worry level fits comfortably in a long, so we
+    // use the primitive engine, otherwise (part 1, or a huge modulus) fall back to BigInteger
     public void processMonkeyThrows(List<Monkey> monkeys, int rounds, boolean shouldDivideWorry) {
-        BigInteger superModulo = BigInteger.valueOf((long)monkeys.stream().map(m -> m.getTestDivisibleBy()).reduce(1, Math::multiplyExact).intValue());
+        processMonkeyThrows(monkeys, rounds, shouldDivideWorry, SimulationMode.SEQUENTIAL);
+    }
+
+    // PER_ITEM_PARALLEL only applies to the long engine, anything needing BigIntegers always runs sequentially
+    public void processMonkeyThrows(List<Monkey> monkeys, int rounds, boolean shouldDivideWorry, SimulationMode mode) {
+        long superModulo = monkeys.stream().mapToLong(m -> m.getTestDivisibleBy()).reduce(1, Math::multiplyExact);
+
+        if (!shouldDivideWorry && superModulo < LONG_ENGINE_MAX_MODULUS && mode == SimulationMode.PER_ITEM_PARALLEL) {
+            processMonkeyThrowsPerItem(monkeys, rounds, superModulo);
+        } else if (!shouldDivideWorry && superModulo < LONG_ENGINE_MAX_MODULUS) {
+            processMonkeyThrowsWithLongs(monkeys, rounds, superModulo);
+        } else {
+            processMonkeyThrowsWithBigIntegers(monkeys, rounds, shouldDivideWorry, BigInteger.valueOf(superModulo));
+        }
+    }
+
+    // Same as the BigInteger version below but with every worry level held mod superModulo in a long.  Each turn drains
+    // the monkey's items into one scratch array and throws them straight onto the other monkeys' buffers.  A monkey never
+    // holds more than every item, so the scratch array is sized for that up front
+    private void processMonkeyThrowsWithLongs(List<Monkey> monkeys, int rounds, long superModulo) {
+        int numMonkeys = monkeys.size();
+        Monkey[] monkeyArray = monkeys.toArray(new Monkey[0]);
+        long[] turn = new long[monkeys.stream().mapToInt(m -> m.getNumItems()).sum()];
+
+        // The operations expect worry levels already reduced
+        for (Monkey monkey : monkeyArray) {
+            if (monkey.hasOversizedItems()) {
+                monkey.setItemsAsBigIntegers(reduceWorries(monkey.getItemsAsBigIntegers(), superModulo));
+                continue;
+            }
+
+            int holding = monkey.drainItems(turn);
+            for (int item=0; item<holding; item++) {
+                turn[item] = Math.floorMod(turn[item], superModulo);
+            }
+            monkey.addItems(turn, 0, holding);
+        }
 
         for (int i=0; i<rounds; i++) {
-            System.out.println("Starting round: " + i);
-            System.out.println("Starting Monkeys:");
-            System.out.println(monkeys);
+            for (int m=0; m<numMonkeys; m++) {
+                Monkey monkey = monkeyArray[m];
+                long divisor = monkey.getTestDivisibleBy();
+                Monkey trueMonkey = monkeyArray[monkey.getTruePassTo()];
+                Monkey falseMonkey = monkeyArray[monkey.getFalsePassTo()];
+
+                int holding = monkey.drainItems(turn);
+                monkey.addInspections(holding);
+
+                for (int item=0; item<holding; item++) {
+                    long worry = monkey.applyOperation(turn[item], superModulo);
+                    (worry % divisor == 0 ? trueMonkey : falseMonkey).addItem(worry);
+                }
+            }
+        }
+    }
 
-            for (Monkey monkey : monkeys) {
-                while (monkey.getItems().size() > 0) {
-                    BigInteger worry = monkey.takeItemForThrowing();
-                    worry = performOperation(worry, monkey.getOperation());
+    // Items never affect each other, an item's path only depends on its own worry level.  Within a round the monkeys go
+    // in order, so an item thrown to a later monkey gets inspected again this round, and one thrown to the same or an
+    // earlier monkey waits for the next round.  So we can follow each item through every round on its own, all of them
+    // in parallel, each thread counting inspections into its own array, and add the arrays up at the end
+    private void processMonkeyThrowsPerItem(List<Monkey> monkeys, int rounds, long superModulo) {
+        int totalItems = monkeys.stream().mapToInt(m -> m.getNumItems()).sum();
+        int[] itemMonkey = new int[totalItems];
+        long[] itemWorry = new long[totalItems];
+        flattenItems(monkeys, superModulo, itemMonkey, itemWorry);
+
+        long[] inspections = traceItems(monkeys.toArray(new Monkey[0]), itemMonkey, itemWorry, rounds, superModulo);
+
+        // Put the monkeys back how the sequential version would have left them (other than item order)
+        for (int m=0; m<monkeys.size(); m++) {
+            monkeys.get(m).addInspections(inspections[m]);
+            monkeys.get(m).clearItems();
+        }
+        for (int i=0; i<totalItems; i++) {
+            monkeys.get(itemMonkey[i]).addItem(itemWorry[i]);
+        }
+    }
 
-                    if (shouldDivideWorry) {
-                        worry = worry.divide(BigInteger.valueOf(3));
-                    } else {
-                        worry = worry.mod(superModulo);
-                    }
+    // Part 2 style inspection counts (no dividing by 3) after any number of rounds, without touching the monkeys.
+    // Thanks to the cycle skipping in traceItem, a billion rounds costs about the same as ten thousand
+    public long[] countInspections(List<Monkey> monkeys, long rounds) {
+        long superModulo = monkeys.stream().mapToLong(m -> m.getTestDivisibleBy()).reduce(1, Math::multiplyExact);
+        if (superModulo >= LONG_ENGINE_MAX_MODULUS) {
+            throw new RuntimeException("Super modulo " + superModulo + " is too big to count inspections with longs");
+        }
 
-                    Boolean isDivisible = worry.mod(BigInteger.valueOf((long)monkey.getTestDivisibleBy())).intValue() == 0;
-                    if (isDivisible) {
-                        monkeys.get(monkey.getTruePassTo()).getItems().add(worry);
-                    } else {
-                        monkeys.get(monkey.getFalsePassTo()).getItems().add(worry);
+        int totalItems = monkeys.stream().mapToInt(m -> m.getNumItems()).sum();
+        int[] itemMonkey = new int[totalItems];
+        long[] itemWorry = new long[totalItems];
+        flattenItems(monkeys, superModulo, itemMonkey, itemWorry);
+
+        return traceItems(monkeys.toArray(new Monkey[0]), itemMonkey, itemWorry, rounds, superModulo);
+    }
+
+    // Flatten the items into (monkey, worry mod superModulo) pairs
+    private void flattenItems(List<Monkey> monkeys, long superModulo, int[] itemMonkey, long[] itemWorry) {
+        int item = 0;
+        for (int m=0; m<monkeys.size(); m++) {
+            Monkey monkey = monkeys.get(m);
+            if (monkey.hasOversizedItems()) {
+                for (BigInteger worry : reduceWorries(monkey.getItemsAsBigIntegers(), superModulo)) {
+                    itemMonkey[item] = m;
+                    itemWorry[item] = worry.longValueExact();
+                    item++;
+                }
+                continue;
+            }
+
+            for (long worry : monkey.getItems()) {
+                itemMonkey[item] = m;
+                itemWorry[item] = Math.floorMod(worry, superModulo);
+                item++;
+            }
+        }
+    }
+
+    // Worry levels too big for a long (left over from part 1 style rounds) brought back under superModulo
+    private List<BigInteger> reduceWorries(List<BigInteger> worries, long superModulo) {
+        BigInteger modulus = BigInteger.valueOf(superModulo);
+        List<BigInteger> reduced = Lists.newArrayListWithCapacity(worries.size());
+        for (BigInteger worry : worries) {
+            reduced.add(worry.mod(modulus));
+        }
+        return reduced;
+    }
+
+    // Traces every item in parallel, returning the inspections per monkey and leaving each item's final position in
+    // itemMonkey / itemWorry
+    private long[] traceItems(Monkey[] monkeys, int[] itemMonkey, long[] itemWorry, long rounds, long superModulo) {
+        int numMonkeys = monkeys.length;
+
+        return IntStream.range(0, itemMonkey.length).parallel().collect(
+                () -> new long[numMonkeys],
+                (counts, i) -> traceItem(monkeys, i, itemMonkey, itemWorry, rounds, superModulo, counts),
+                (counts, otherCounts) -> {
+                    for (int m=0; m<numMonkeys; m++) {
+                        counts[m] += otherCounts[m];
                     }
+                });
+    }
+
+    // Follows item i through every round, adding each inspection to counts, and leaves where it ended up in
+    // itemMonkey[i] / itemWorry[i].
+    // Where an item sits at the start of a round, (monkey, worry mod superModulo), is all that decides the rest of its
+    // path, and there are only so many of those, so sooner or later the item loops.  Brent's algorithm finds where the
+    // loop starts (mu rounds in) and how long it is (lambda rounds) without remembering any states, then we only play
+    // the lead in, one lap of the loop, and whatever's left over after all the whole laps.  If the loop doesn't show
+    // up within the rounds asked for, just play them all
+    private void traceItem(Monkey[] monkeys, int i, int[] itemMonkey, long[] itemWorry, long rounds, long superModulo, long[] counts) {
+        long start = packState(itemMonkey[i], itemWorry[i]);
+        long state;
+
+        // Find lambda, the hare runs ahead and the tortoise teleports to it every power of two rounds
+        long power = 1;
+        long lambda = 1;
+        long tortoise = start;
+        long hare = playRound(monkeys, start, superModulo, null);
+        long roundsPlayed = 1;
+        while (tortoise != hare && roundsPlayed < rounds) {
+            if (power == lambda) {
+                tortoise = hare;
+                power *= 2;
+                lambda = 0;
+            }
+            hare = playRound(monkeys, hare, superModulo, null);
+            lambda++;
+            roundsPlayed++;
+        }
+
+        if (tortoise != hare) {
+            state = playRounds(monkeys, start, rounds, superModulo, counts);
+        } else {
+            // Find mu, start the hare lambda rounds ahead and walk both until they meet at the start of the loop
+            long mu = 0;
+            tortoise = start;
+            hare = playRounds(monkeys, start, lambda, superModulo, null);
+            while (tortoise != hare && mu < rounds) {
+                tortoise = playRound(monkeys, tortoise, superModulo, null);
+                hare = playRound(monkeys, hare, superModulo, null);
+                mu++;
+            }
+
+            if (mu + lambda >= rounds) {
+                state = playRounds(monkeys, start, rounds, superModulo, counts);
+            } else {
+                long[] lapCounts = new long[monkeys.length];
+                state = playRounds(monkeys, start, mu, superModulo, counts);
+                playRounds(monkeys, state, lambda, superModulo, lapCounts);  // Comes back round to state
+
+                long laps = (rounds - mu) / lambda;
+                for (int m=0; m<monkeys.length; m++) {
+                    counts[m] += lapCounts[m] * laps;
                 }
+
+                state = playRounds(monkeys, state, (rounds - mu) % lambda, superModulo, counts);
             }
         }
+
+        itemMonkey[i] = stateMonkey(state);
+        itemWorry[i] = stateWorry(state);
     }
 
-    private BigInteger performOperation(BigInteger old, String operation) {
-        String operator = operation.substring(4,5);
-        //System.out.println(operator);
-        String factor = operation.split(" ")[2];
+    private long playRounds(Monkey[] monkeys, long state, long rounds, long superModulo, long[] counts) {
+        for (long round=0; round<rounds; round++) {
+            state = playRound(monkeys, state, superModulo, counts);
+        }
 
-        //System.out.println(old + " " + operator + " " + factor);
+        return state;
+    }
 
-        BigInteger convertedFactor = convertFactor(old, factor);
-        if (operator.equals("+")) {
-            return old.add(convertedFactor);
-        } else if (operator.equals("-")) {
-            return old.subtract(convertedFactor);
-        } else if (operator.equals("*")) {
-            return old.multiply(convertedFactor);
+    // Plays one round for one item, returning where it starts the next round.  Inspections are added to counts unless
+    // it's null (when we're only looking for the loop)
+    private long playRound(Monkey[] monkeys, long state, long superModulo, long[] counts) {
+        int m = stateMonkey(state);
+        long worry = stateWorry(state);
+
+        while (true) {
+            Monkey monkey = monkeys[m];
+            if (counts != null) {
+                counts[m]++;
+            }
+
+            worry = monkey.applyOperation(worry, superModulo);
+            int passTo = worry % monkey.getTestDivisibleBy() == 0 ? monkey.getTruePassTo() : monkey.getFalsePassTo();
+
+            if (passTo <= m) {
+                return packState(passTo, worry);
+            }
+            m = passTo;
         }
+    }
+
+    // Worry is below 2^31 and there are far fewer than 2^16 monkeys, so both fit in one long
+    private static long packState(int monkey, long worry) {
+        return (worry << 16) | monkey;
+    }
 
-        throw new RuntimeException("Operator not implemented: " + operator);
+    private static int stateMonkey(long state) {
+        return (int)(state & 0xFFFF);
     }
 
-    // If factor is the string "old", return the passed in integer old value, otherwise parse the integer out of the factor
-    private BigInteger convertFactor(BigInteger old, String factor) {
-        if ("old".equals(factor)) {
-            return old;
+    private static long stateWorry(long state) {
+        return state >>> 16;
+    }
+
+    // Worry levels here can outgrow a long (part 1 only divides by 3), so the items are moved into local BigInteger
+    // queues for the run and put back on the monkeys at the end, see Monkey.setItemsAsBigIntegers
+    private void processMonkeyThrowsWithBigIntegers(List<Monkey> monkeys, int rounds, boolean shouldDivideWorry, BigInteger superModulo) {
+        BigInteger three = BigInteger.valueOf(3);
+
+        List<Deque<BigInteger>> items = Lists.newArrayList();
+        for (Monkey monkey : monkeys) {
+            items.add(new ArrayDeque<>(monkey.getItemsAsBigIntegers()));
         }
 
-        return new BigInteger(factor);
+        for (int i=0; i<rounds; i++) {
+            //System.out.println("Starting round: " + i);
+            //System.out.println(monkeys);
+
+            for (int m=0; m<monkeys.size(); m++) {
+                Monkey monkey = monkeys.get(m);
+                Deque<BigInteger> monkeyItems = items.get(m);
+                BigInteger divisor = BigInteger.valueOf((long)monkey.getTestDivisibleBy());
+                monkey.addInspections(monkeyItems.size());
+
+                while (!monkeyItems.isEmpty()) {
+                    BigInteger worry = monkeyItems.poll();
+                    worry = monkey.applyOperation(worry);
+
+                    if (shouldDivideWorry) {
+                        worry = worry.divide(three);
+                    } else {
+                        worry = worry.mod(superModulo);
+                    }
+
+                    Boolean isDivisible = worry.mod(divisor).signum() == 0;
+                    if (isDivisible) {
+                        items.get(monkey.getTruePassTo()).add(worry);
+                    } else {
+                        items.get(monkey.getFalsePassTo()).add(worry);
+                    }
+                }
+            }
+        }
+
+        // Put the items back, a monkey holding anything that outgrew a long keeps them all as BigIntegers
+        for (int m=0; m<monkeys.size(); m++) {
+            monkeys.get(m).setItemsAsBigIntegers(items.get(m));
+        }
     }
 
     public List<Monkey> getMonkeysFromInput(List<String> monkeyInput) {
@@ -338,7 +607,7 @@ public class WorryTracker {
             // String everything but digits and commas so we're left with just comma seperated ints to split on and parse
             String[] startingItemsStrings = monkeyInput.get(i+1).replaceAll("[^\\d|,]", "").split(",");
             for (String worryLevel : startingItemsStrings) {
-                monkey.getItems().add(new BigInteger(worryLevel));
+                monkey.addItem(Long.parseLong(worryLevel));
             }
 
             monkey.setOperation(monkeyInput.get(i+2).split(" = ")[1]);
@@ -0,0 +1,50 @@
+package y2022.day12;
+
+import java.util.Arrays;
+
+/**
+ * Answers to a batch of PathQuerys, in the same order the queries were given, plus how long each one took
+ */
+public class BatchSearchResult {
+    private final int[] pathLengths;    // GridGraph.UNREACHABLE where there's no path
+    private final long[] latencyNanos;
+
+    public BatchSearchResult(int[] pathLengths, long[] latencyNanos) {
+        this.pathLengths = pathLengths;
+        this.latencyNanos = latencyNanos;
+    }
+
+    public int size() {
+        return pathLengths.length;
+    }
+
+    public int getPathLength(int queryIndex) {
+        return pathLengths[queryIndex];
+    }
+
+    public long getLatencyNanos(int queryIndex) {
+        return latencyNanos[queryIndex];
+    }
+
+    public int getShortestPathLength() {
+        return Arrays.stream(pathLengths).min().orElse(GridGraph.UNREACHABLE);
+    }
+
+    // Nearest rank percentile, eg 50 for the median, 100 for the slowest query
+    public long getLatencyPercentileNanos(double percentile) {
+        if (latencyNanos.length == 0) {
+            return 0;
+        }
+
+        long[] sorted = latencyNanos.clone();
+        Arrays.sort(sorted);
+        int rank = (int)Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    public String latencySummary() {
+        return String.format("%d queries, latency p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus", size(),
+                getLatencyPercentileNanos(50) / 1000.0, getLatencyPercentileNanos(90) / 1000.0,
+                getLatencyPercentileNanos(99) / 1000.0, getLatencyPercentileNanos(100) / 1000.0);
+    }
+}
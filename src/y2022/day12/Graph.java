@@ -1,20 +1,26 @@
 package y2022.day12;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import utils.Point;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class Graph {
     private Set<SearchNode> nodes = Sets.newHashSet();
+    private List<SearchNode> nodesByIndex = Lists.newArrayList();
+    private Map<Point, SearchNode> nodesByPosition = Maps.newHashMap();
 
     public void addNode(SearchNode node) {
         //System.out.println("Adding node: " + node.getPosition().toString());
-        nodes.add(node);
+        if (nodes.add(node)) {
+            node.setIndex(nodesByIndex.size());
+            nodesByIndex.add(node);
+            nodesByPosition.put(node.getPosition(), node);
+        }
     }
 
     public Set<SearchNode> getNodes() {
@@ -22,67 +28,113 @@ public class Graph {
     }
 
     public boolean nodeExists(Point p) {
-        return nodes.contains(new SearchNode(p));
+        return nodesByPosition.containsKey(p);
     }
 
     public SearchNode getNode(Point p) {
-        SearchNode node = nodes.stream().filter(n -> n.equals(new SearchNode(p))).toList().get(0);
+        SearchNode node = nodesByPosition.get(p);
+        if (node == null) {
+            throw new RuntimeException("No node at " + p);
+        }
         return node;
     }
 
+    // Dijkstra's, driven by an indexed binary heap so picking the next node is O(log V) instead of a scan of every
+    // unsettled node.  When every edge weighs 1 (which is all MapSearch ever builds) a plain BFS gives the same answer
+    // without the heap, so we switch to that automatically
     public Integer calculateShortestPathWeightFromSource(SearchNode source, SearchNode destination) {
-        System.out.println("Running Dijkstra's on graph....");
-
         source.setWeightFromSource(0);  // Distance to our self, the source
+        source.setPredecessor(null);
+
+        if (allEdgesHaveUnitWeight()) {
+            System.out.println("Running BFS on graph....");
+            breadthFirstSearch(source);
+        } else {
+            System.out.println("Running Dijkstra's on graph....");
+            dijkstraSearch(source);
+        }
+
+        Integer pathWeight = destination.getShorestPathWeight();
+
+        //System.out.println("Shortest path weight: " + pathWeight + ", path length: " + destination.getShortestPath().size());
 
-        Set<SearchNode> settledNodes = Sets.newHashSet();
-        Set<SearchNode> unsettledNodes = Sets.newHashSet();
+        return pathWeight;
+    }
+
+    // Nodes from the source to destination (both included) from the last search, or empty if it wasn't reached
+    public List<SearchNode> getShortestPath(SearchNode destination) {
+        if (destination.getShorestPathWeight() == Integer.MAX_VALUE) {
+            return Lists.newLinkedList();
+        }
+
+        List<SearchNode> path = destination.getShortestPath();
+        path.add(destination);
+        return path;
+    }
 
-        unsettledNodes.add(source);
+    private void dijkstraSearch(SearchNode source) {
+        boolean[] settled = new boolean[nodesByIndex.size()];
+        IndexedMinHeap unsettledNodes = new IndexedMinHeap(nodesByIndex.size());
 
-        while (unsettledNodes.size() > 0) {
-            SearchNode currentNode = getLowestWeightNode(unsettledNodes);
-            unsettledNodes.remove(currentNode);
+        unsettledNodes.insertOrDecrease(indexOf(source), 0);
 
-            //System.out.println("Considering node: " + currentNode.getPosition() + " with num adjacent: " + currentNode.getAdjacentNodes().size());
+        while (!unsettledNodes.isEmpty()) {
+            SearchNode currentNode = nodesByIndex.get(unsettledNodes.pollMin());
+            settled[currentNode.getIndex()] = true;
 
             for (Map.Entry<SearchNode, Integer> adjacency : currentNode.getAdjacentNodes().entrySet()) {
                 SearchNode adjacentNode = adjacency.getKey();
                 Integer edgeWeight = adjacency.getValue();
-                //System.out.println("  For adjacency: " + adjacentNode.getPosition());
 
-                if (!settledNodes.contains(adjacentNode)) {
+                if (!settled[indexOf(adjacentNode)]) {
                     calculateAndSetMinimumDistanceWeight(adjacentNode, edgeWeight, currentNode);
-                    unsettledNodes.add(adjacentNode);
+                    unsettledNodes.insertOrDecrease(adjacentNode.getIndex(), adjacentNode.getShorestPathWeight());
                 }
             }
-            settledNodes.add(currentNode);
         }
+    }
 
-        Integer pathLength = destination.getShortestPath().size();
-        Integer pathWeight = destination.getShorestPathWeight();
+    // Every edge weighs 1, so nodes come off the queue in distance order and the first visit is always the shortest
+    private void breadthFirstSearch(SearchNode source) {
+        boolean[] visited = new boolean[nodesByIndex.size()];
+        int[] queue = new int[nodesByIndex.size()];
+        int head = 0;
+        int tail = 0;
 
-        //System.out.println("Shortest path weight: " + pathWeight + ", path length: " + pathLength);
+        visited[indexOf(source)] = true;
+        queue[tail++] = source.getIndex();
 
-        return pathWeight;
-    }
+        while (head < tail) {
+            SearchNode currentNode = nodesByIndex.get(queue[head++]);
 
-    // Returns node with the lowest weight from source
-    private SearchNode getLowestWeightNode(Set<SearchNode> unsettledNodes) {
-        SearchNode lowestWeightNode = null;
-        int lowestWeight = Integer.MAX_VALUE;
+            for (SearchNode adjacentNode : currentNode.getAdjacentNodes().keySet()) {
+                if (!visited[indexOf(adjacentNode)]) {
+                    visited[adjacentNode.getIndex()] = true;
+                    calculateAndSetMinimumDistanceWeight(adjacentNode, 1, currentNode);
+                    queue[tail++] = adjacentNode.getIndex();
+                }
+            }
+        }
+    }
 
-        for (SearchNode node : unsettledNodes) {
-            int nodeWeight = node.getShorestPathWeight();
-            if (nodeWeight < lowestWeight) {
-                lowestWeight = nodeWeight;
-                lowestWeightNode = node;
+    private boolean allEdgesHaveUnitWeight() {
+        for (SearchNode node : nodesByIndex) {
+            for (Integer edgeWeight : node.getAdjacentNodes().values()) {
+                if (edgeWeight != 1) {
+                    return false;
+                }
             }
         }
 
-        //System.out.println("Lowest weight unsettled node: " + lowestWeightNode.getPosition() + " weight: " + lowestWeight);
+        return true;
+    }
+
+    private int indexOf(SearchNode node) {
+        if (node.getIndex() < 0) {
+            throw new RuntimeException("Node " + node.getPosition() + " was never added to the graph");
+        }
 
-        return lowestWeightNode;
+        return node.getIndex();
     }
 
     private void calculateAndSetMinimumDistanceWeight(SearchNode evaluationNode, Integer edgeWeight, SearchNode sourceNode) {
@@ -91,11 +143,9 @@ public class Graph {
 
         if (sourceWeight + edgeWeight < evaluationNode.getShorestPathWeight()) {
             evaluationNode.setWeightFromSource(sourceWeight + edgeWeight);
-            List<SearchNode> shortestPath = Lists.newLinkedList(sourceNode.getShortestPath());
-            shortestPath.add(sourceNode);
-            evaluationNode.setShortestPath(shortestPath);
+            evaluationNode.setPredecessor(sourceNode);  // Only remember where we came from, the path is rebuilt on demand
 
-            //System.out.println("    updated shortest path and weight for evalution node, shortest path now: " + shortestPath.size());
+            //System.out.println("    updated shortest path and weight for evalution node");
         }
     }
 }
@@ -0,0 +1,186 @@
+package y2022.day12;
+
+/**
+ * The height map as a graph without building any nodes or edges.
+ *
+ * Node ids are r*cols+c, and the neighbours of a node are worked out on the fly from the heights: you can step
+ * up/down/left/right onto a cell at most one higher than you (and down any amount).  Nothing is allocated per node and
+ * building the graph is just one copy of the heights.
+ *
+ * The graph never changes once built, all the state a search writes lives in a SearchContext, so any number of threads
+ * can search the same graph at the same time as long as each brings its own context.
+ */
+public class GridGraph {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+    public static final int NO_PARENT = -1;
+
+    private static final int[] ROW_STEPS = {-1, 1, 0, 0};
+    private static final int[] COL_STEPS = {0, 0, -1, 1};
+
+    private final char[] heights;  // Flattened by node id, S and E already replaced with 'a' and 'z'
+    private final int rows;
+    private final int cols;
+
+    // Takes a copy, so changing the height map afterwards doesn't change the graph
+    public GridGraph(char[][] heightMap) {
+        this.rows = heightMap.length;
+        this.cols = heightMap[0].length;
+        this.heights = new char[rows * cols];
+
+        for (int r=0; r<rows; r++) {
+            System.arraycopy(heightMap[r], 0, heights, r * cols, cols);
+        }
+    }
+
+    public int size() {
+        return rows * cols;
+    }
+
+    public SearchContext newSearchContext() {
+        return new SearchContext(size());
+    }
+
+    public int nodeId(int r, int c) {
+        return r * cols + c;
+    }
+
+    public int row(int nodeId) {
+        return nodeId / cols;
+    }
+
+    public int col(int nodeId) {
+        return nodeId % cols;
+    }
+
+    public char height(int nodeId) {
+        return heights[nodeId];
+    }
+
+    // Can you step from one node onto an adjacent one, you can only climb 1 but can drop any amount
+    public boolean canStep(int fromId, int toId) {
+        return heights[toId] - heights[fromId] <= 1;
+    }
+
+    // Manhattan distance on its own can't see height, but you can only climb 1 per step, so you always need at least as
+    // many steps as the height still left to climb.  Both never overestimate, so the bigger of the two is still safe
+    public int heuristic(int nodeId, int target) {
+        int manhattan = Math.abs(nodeId / cols - target / cols) + Math.abs(nodeId % cols - target % cols);
+        int climb = heights[target] - heights[nodeId];
+        return Math.max(manhattan, climb);
+    }
+
+    // A* from source to target, expanding nodes in order of steps so far + heuristic
+    public SearchResult aStar(int source, int target, SearchContext context) {
+        context.beginQuery();
+        IndexedMinHeap frontier = context.frontier;
+
+        context.reach(source, 0, NO_PARENT);
+        frontier.insertOrDecrease(source, heuristic(source, target));
+        int nodesExpanded = 0;
+
+        while (!frontier.isEmpty()) {
+            int current = frontier.pollMin();
+            context.close(current);
+            nodesExpanded++;
+
+            if (current == target) {
+                return new SearchResult(context.getDistance(target), nodesExpanded);
+            }
+
+            int r = current / cols;
+            int c = current % cols;
+            for (int d=0; d<4; d++) {
+                int nr = r + ROW_STEPS[d];
+                int nc = c + COL_STEPS[d];
+
+                // Don't traverse off the map
+                if (nr < 0 || nc < 0 || nr >= rows || nc >= cols) {
+                    continue;
+                }
+
+                int next = nr * cols + nc;
+                if (context.isClosed(next) || !canStep(current, next)) {
+                    continue;
+                }
+
+                int stepsToNext = context.getDistance(current) + 1;
+                if (stepsToNext < context.getDistance(next)) {
+                    context.reach(next, stepsToNext, current);
+                    frontier.insertOrDecrease(next, stepsToNext + heuristic(next, target));
+                }
+            }
+        }
+
+        return new SearchResult(UNREACHABLE, nodesExpanded);
+    }
+
+    public SearchResult aStar(int source, int target) {
+        return aStar(source, target, newSearchContext());
+    }
+
+    // Plain BFS from source to target (which is what Dijkstra becomes with every step costing 1), counting expansions
+    // the same way as aStar so the two can be compared
+    public SearchResult unguidedSearch(int source, int target, SearchContext context) {
+        int nodesExpanded = breadthFirstSearch(source, target, false, context);
+        return new SearchResult(context.getDistance(target), nodesExpanded);
+    }
+
+    public SearchResult unguidedSearch(int source, int target) {
+        return unguidedSearch(source, target, newSearchContext());
+    }
+
+    // Fills in the context's distances and parents searching forwards from source, or with reversed set, backwards, ie
+    // distance to n is then the number of steps from n to source.  Stops early once target is reached, pass -1 to
+    // search everything.  Returns the number of nodes expanded
+    public int breadthFirstSearch(int source, int target, boolean reversed, SearchContext context) {
+        context.beginQuery();
+        int[] queue = context.queue;
+        int head = 0;
+        int tail = 0;
+
+        context.reach(source, 0, NO_PARENT);
+        queue[tail++] = source;
+
+        while (head < tail) {
+            int current = queue[head++];
+            if (current == target) {
+                return head;
+            }
+
+            int r = current / cols;
+            int c = current % cols;
+            for (int d=0; d<4; d++) {
+                int nr = r + ROW_STEPS[d];
+                int nc = c + COL_STEPS[d];
+
+                // Don't traverse off the map
+                if (nr < 0 || nc < 0 || nr >= rows || nc >= cols) {
+                    continue;
+                }
+
+                int next = nr * cols + nc;
+                if (context.isReached(next)) {
+                    continue;
+                }
+
+                boolean traversable = reversed ? canStep(next, current) : canStep(current, next);
+                if (traversable) {
+                    context.reach(next, context.getDistance(current) + 1, current);
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        return head;
+    }
+
+    // Number of steps from source to target, or UNREACHABLE
+    public int shortestPathLength(int source, int target, SearchContext context) {
+        breadthFirstSearch(source, target, false, context);
+        return context.getDistance(target);
+    }
+
+    public int shortestPathLength(int source, int target) {
+        return shortestPathLength(source, target, newSearchContext());
+    }
+}
@@ -0,0 +1,103 @@
+package y2022.day12;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of node ids 0..capacity-1 keyed by an int priority, with decrease-key.
+ * pos[id] tracks where each id sits in the heap so we can find and sift it up when its priority drops, which is what
+ * lets Dijkstra keep one entry per node instead of piling up stale duplicates.
+ */
+public class IndexedMinHeap {
+    private final int[] heap;      // heap[i] is a node id
+    private final int[] pos;       // pos[id] is the index of id in heap, or -1 if it isn't in the heap
+    private final int[] priority;  // priority[id]
+    private int size = 0;
+
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        pos = new int[capacity];
+        priority = new int[capacity];
+        Arrays.fill(pos, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int id) {
+        return pos[id] != -1;
+    }
+
+    // Empties the heap, only touches the ids still in it
+    public void clear() {
+        for (int i=0; i<size; i++) {
+            pos[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    // Adds id, or lowers its priority if it's already in the heap with a higher one
+    public void insertOrDecrease(int id, int newPriority) {
+        if (pos[id] == -1) {
+            heap[size] = id;
+            pos[id] = size;
+            priority[id] = newPriority;
+            size++;
+            siftUp(size - 1);
+        } else if (newPriority < priority[id]) {
+            priority[id] = newPriority;
+            siftUp(pos[id]);
+        }
+    }
+
+    // Removes and returns the id with the lowest priority
+    public int pollMin() {
+        int min = heap[0];
+        size--;
+        pos[min] = -1;
+
+        if (size > 0) {
+            heap[0] = heap[size];
+            pos[heap[0]] = 0;
+            siftDown(0);
+        }
+
+        return min;
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priority[heap[parent]] <= priority[id]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            pos[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+
+    private void siftDown(int i) {
+        int id = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && priority[heap[child + 1]] < priority[heap[child]]) {
+                child++;
+            }
+            if (priority[heap[child]] >= priority[id]) {
+                break;
+            }
+            heap[i] = heap[child];
+            pos[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+}
@@ -6,6 +6,12 @@ import utils.Point;
 
 import java.io.FileNotFoundException;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * --- Day 12: Hill Climbing Algorithm ---
@@ -62,7 +68,9 @@ import java.util.List;
  *
  */
 public class MapSearch {
-    Graph graph = new Graph();
+    public static final int UNREACHABLE = GridGraph.UNREACHABLE;
+
+    GridGraph gridGraph;
     Point startPoint;
     Point endPoint;
 
@@ -78,28 +86,28 @@ public class MapSearch {
         Point startPoint = searcher.buildGraph(heightMap);
         searcher.outputShortestPathForStartingPosition(startPoint);
 
+        // How much of the map does A* get to skip compared with a plain search, on the real map and a much bigger one.
+        // The 1000x1000 map takes a while, uncomment to compare
+        //searcher.compareSearches(startPoint);
+        //MapSearch syntheticSearcher = new MapSearch();
+        //Point syntheticStart = syntheticSearcher.buildGraph(syntheticSearcher.generateHeightMap(1000, 1000, 12));
+        //syntheticSearcher.compareSearches(syntheticStart);
+
         // Part 2
-        List<Point> potentialStartingPositions = searcher.getPotentialStartingPositions(heightMap);
-        System.out.println("Num starting points: " + potentialStartingPositions.size());
-
-        // We need to rebuild the graph before each search cycle to reset the dijkstra distances set on the nodes
-        // We're just going to brute force part 2, but in hindsight we could just do the Dijkstra search seeding it with
-        // all the starting positions at weight 8 and starting all of those in the unsettled list.  But I'm not bothering
-        // to update now this is running.
-        Integer shortestPath = Integer.MAX_VALUE;
-        int runNumber = 1;
-        long startTimeMillis = System.currentTimeMillis();
-        for (Point start : potentialStartingPositions) {
-            System.out.println("Starting run number: " + runNumber + " at time: " + ((System.currentTimeMillis() - startTimeMillis) / 1000));
-            searcher.buildGraph(heightMap);
-            Integer pathLength = searcher.outputShortestPathForStartingPosition(start);
-            if (pathLength < shortestPath) {
-                shortestPath = pathLength;
-            }
-            runNumber++;
-        }
+        // One reverse search from E gives the distance from every cell to E, so the best start is just the smallest
+        // distance over all the 'a' cells, no need to search from each of them
+        int[][] distancesToEnd = searcher.distancesToEnd(heightMap);
+        int shortestPath = searcher.shortestPathFromAnyStart(heightMap, distancesToEnd);
 
         System.out.println("Part 2: Shortest shortest hiking path: " + shortestPath);
+
+        // Same answer the brute force way, every start searched separately, but spread over all the cores
+        //List<PathQuery> queries = Lists.newArrayList();
+        //for (Point start : searcher.getPotentialStartingPositions(heightMap)) {
+        //    queries.add(new PathQuery(start, searcher.getEndPoint()));
+        //}
+        //BatchSearchResult batch = searcher.shortestPathLengths(queries, Runtime.getRuntime().availableProcessors());
+        //System.out.println("Part 2 batched: " + batch.getShortestPathLength() + ", " + batch.latencySummary());
     }
 
     // Simply return all points which have a height of 'a' as potential starts
@@ -123,20 +131,171 @@ public class MapSearch {
     }
 
     public Integer outputShortestPathForStartingPosition(Point startPoint) {
-        Integer shortestPath = graph.calculateShortestPathWeightFromSource(graph.getNode(startPoint), graph.getNode(endPoint));
+        Integer shortestPath = gridGraph.shortestPathLength(nodeId(startPoint), nodeId(endPoint));
         System.out.println("Shortest Path: " + shortestPath);
         return shortestPath;
     }
 
-    // Builds the class graph member, and replaces S and E with their correct heights in the height map
+    // Runs the start to E search both with and without the A* heuristic and prints how many nodes each expanded
+    public void compareSearches(Point startPoint) {
+        SearchContext context = gridGraph.newSearchContext();  // Both searches share one context, no reset needed
+        SearchResult unguided = gridGraph.unguidedSearch(nodeId(startPoint), nodeId(endPoint), context);
+        SearchResult aStar = gridGraph.aStar(nodeId(startPoint), nodeId(endPoint), context);
+
+        System.out.println("Map " + gridGraph.size() + " nodes, path length " + aStar.getPathLength() + ": plain search expanded "
+                + unguided.getNodesExpanded() + ", A* expanded " + aStar.getNodesExpanded());
+
+        if (unguided.getPathLength() != aStar.getPathLength()) {
+            throw new RuntimeException("A* found " + aStar.getPathLength() + " but the plain search found " + unguided.getPathLength());
+        }
+    }
+
+    // Builds a bigger map for trying searches on: one hill with E at the top and S in the top left corner.  Height
+    // goes up the closer you are to the peak with a bit of random roughness, plus some random cliffs you can't climb
+    public char[][] generateHeightMap(int numRows, int numColumns, long seed) {
+        Random random = new Random(seed);
+        char[][] heights = new char[numRows][numColumns];
+        int peakR = numRows * 3 / 4;
+        int peakC = numColumns * 3 / 4;
+        double maxDistance = Math.hypot(Math.max(peakR, numRows - peakR), Math.max(peakC, numColumns - peakC));
+
+        for (int r=0; r<numRows; r++) {
+            for (int c=0; c<numColumns; c++) {
+                double closeness = 1 - Math.hypot(r - peakR, c - peakC) / maxDistance;
+                int height = (int)Math.round(closeness * 25) + random.nextInt(3) - 1;
+                if (random.nextInt(20) == 0) {
+                    height += 3;  // Cliff
+                }
+                heights[r][c] = (char)('a' + Math.max(0, Math.min(25, height)));
+            }
+        }
+
+        heights[0][0] = 'S';
+        heights[peakR][peakC] = 'E';
+
+        return heights;
+    }
+
+    // Builds the class grid graph member, and replaces S and E with their correct heights in the height map
     // Returns the starting point that was marked as 'S'
     public Point buildGraph(char[][] heightMap) {
+        Point startPoint = replaceStartAndEnd(heightMap);
+
+        gridGraph = new GridGraph(heightMap);
+
+        return startPoint;
+    }
+
+    // The same map as an explicit graph of SearchNodes, for when you want to run the general Graph searches over it
+    // With reversed set every edge is flipped, for searching back from E
+    public Graph buildSearchNodeGraph(char[][] heightMap, boolean reversed) {
+        replaceStartAndEnd(heightMap);
+
         Graph graph = new Graph();
+        buildAdjacentNodes(heightMap, graph, reversed);
+        return graph;
+    }
+
+    // Distance (number of steps) from every cell in the map to E, or UNREACHABLE if you can't get to E from that cell
+    // Searches once, backwards from E, over the map with every step flipped
+    public int[][] distancesToEnd(char[][] heightMap) {
+        buildGraph(heightMap);
+        if (endPoint == null) {
+            throw new RuntimeException("Height map has no end point 'E'");
+        }
+
+        SearchContext context = gridGraph.newSearchContext();
+        gridGraph.breadthFirstSearch(nodeId(endPoint), -1, true, context);
+
+        int[][] distances = new int[heightMap.length][heightMap[0].length];
+        for (int r=0; r<heightMap.length; r++) {
+            for (int c=0; c<heightMap[0].length; c++) {
+                distances[r][c] = context.getDistance(gridGraph.nodeId(r, c));
+            }
+        }
+
+        return distances;
+    }
+
+    // Steps from start to end on the graph from buildGraph.  The graph is never modified by a search, so this can be
+    // called from as many threads as you like, as long as each thread passes its own context (see newSearchContext)
+    public int shortestPathLength(Point start, Point end, SearchContext context) {
+        return gridGraph.shortestPathLength(nodeId(start), nodeId(end), context);
+    }
+
+    // Runs every query against the graph from buildGraph on a fixed pool of threads.  Each thread has its own
+    // SearchContext and takes the next unanswered query until there are none left, writing its answer into that
+    // query's slot, so the results come back in the same order as the queries
+    public BatchSearchResult shortestPathLengths(List<PathQuery> queries, int numThreads) {
+        int[] pathLengths = new int[queries.size()];
+        long[] latencyNanos = new long[queries.size()];
+        AtomicInteger nextQuery = new AtomicInteger(0);
+
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<?>> workers = Lists.newArrayList();
+            for (int t=0; t<numThreads; t++) {
+                workers.add(pool.submit(() -> {
+                    SearchContext context = gridGraph.newSearchContext();
+
+                    for (int q = nextQuery.getAndIncrement(); q < queries.size(); q = nextQuery.getAndIncrement()) {
+                        long startNanos = System.nanoTime();
+                        pathLengths[q] = shortestPathLength(queries.get(q).getStart(), queries.get(q).getEnd(), context);
+                        latencyNanos[q] = System.nanoTime() - startNanos;
+                    }
+                }));
+            }
+
+            // Waiting on every worker also makes all their writes to the result arrays visible to us
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for batch searches", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Batch search failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return new BatchSearchResult(pathLengths, latencyNanos);
+    }
+
+    public SearchContext newSearchContext() {
+        return gridGraph.newSearchContext();
+    }
+
+    public GridGraph getGridGraph() {
+        return gridGraph;
+    }
+
+    public Point getEndPoint() {
+        return endPoint;
+    }
+
+    private int nodeId(Point p) {
+        return gridGraph.nodeId(p.x, p.y);
+    }
+
+    // Shortest distance to E from any cell at height 'a', or UNREACHABLE if none of them can get there
+    public int shortestPathFromAnyStart(char[][] heightMap, int[][] distancesToEnd) {
+        int shortestPath = UNREACHABLE;
+
+        for (Point start : getPotentialStartingPositions(heightMap)) {
+            shortestPath = Math.min(shortestPath, distancesToEnd[start.x][start.y]);
+        }
+
+        return shortestPath;
+    }
+
+    // Find start and end nodes, remember the end, than replace their letters with the correct heights in the height map
+    // Returns the start point, or (-1,-1) if it's already been replaced
+    private Point replaceStartAndEnd(char[][] heightMap) {
         Point startPoint = new Point(-1,-1);
         int numRows = heightMap.length;
         int numColumns = heightMap[0].length;
 
-        // Find start and end nodes, remember them, than replace their letters with the correct heights in the height map
         for (int r=0; r<numRows; r++) {
             for (int c=0; c<numColumns; c++) {
                 if (heightMap[r][c] == 'S') {
@@ -151,29 +310,28 @@ public class MapSearch {
             }
         }
 
-        buildAdjacentNodes(heightMap);
-
         return startPoint;
     }
 
     // Add adjacent nodes to our graph if they are one height away from our node
-    private void buildAdjacentNodes(char[][] heightMap) {
+    // With reversed set, an edge goes from a node to each neighbour that could step onto it, for searching back from E
+    private void buildAdjacentNodes(char[][] heightMap, Graph graph, boolean reversed) {
         int numRows = heightMap.length;
         int numColumns = heightMap[0].length;
 
-        // write this
-        // For each position in the heightmap
+        // Look nodes up by position in an array rather than searching the graph for them
+        SearchNode[][] nodes = new SearchNode[numRows][numColumns];
         for (int r=0; r<numRows; r++) {
             for (int c=0; c<numColumns; c++) {
-                Point point = new Point(r,c);
-                SearchNode nodeUnderConsideration;
-                if (graph.nodeExists(point)) {
-                    nodeUnderConsideration = graph.getNode(point);
-                } else {
-                    nodeUnderConsideration = new SearchNode(point);
-                }
+                nodes[r][c] = new SearchNode(new Point(r,c));
+                graph.addNode(nodes[r][c]);
+            }
+        }
 
-                //System.out.println(("For Node: " + point));
+        // For each position in the heightmap
+        for (int r=0; r<numRows; r++) {
+            for (int c=0; c<numColumns; c++) {
+                Point point = nodes[r][c].getPosition();
 
                 // Check each adjacent position for traversability, add the adjacent node if it is
                 for (int rt=-1; rt<=1; rt++) {
@@ -184,23 +342,15 @@ public class MapSearch {
                             continue;
                         }
 
-                        if (isPointTraversable(r + rt, c + ct, point, heightMap)) {
-                            Point toPoint = new Point(r + rt, c + ct);
-                            //System.out.println("  Adding adjacency: " + toPoint);
-                            if (graph.nodeExists(toPoint)) {
-                                // All edges weight of 1 for now
-                                nodeUnderConsideration.addAdjacency(graph.getNode(toPoint), 1);
-                            } else {
-                                SearchNode newNode = new SearchNode(toPoint);
-                                graph.addNode(newNode);  // We need to add this to the graph as soon as we encounter it as an adjacency
-                                nodeUnderConsideration.addAdjacency(newNode, 1);
-                            }
+                        boolean traversable = reversed
+                                ? isPointTraversableInReverse(r + rt, c + ct, point, heightMap)
+                                : isPointTraversable(r + rt, c + ct, point, heightMap);
+                        if (traversable) {
+                            // All edges weight of 1 for now
+                            nodes[r][c].addAdjacency(nodes[r + rt][c + ct], 1);
                         }
                     }
                 }
-
-                graph.addNode(nodeUnderConsideration);
-
             }
         }
     }
@@ -234,6 +384,16 @@ public class MapSearch {
         return false;
     }
 
+    // Could we step from (r,c) onto toPoint, ie the normal rule with the direction flipped
+    private boolean isPointTraversableInReverse(int r, int c, Point toPoint, char[][] heightMap) {
+        // Don't traverse off the map
+        if (r<0 || c<0 || r>heightMap.length-1 || c>heightMap[0].length-1) {
+            return false;
+        }
+
+        return isPointTraversable(toPoint.x, toPoint.y, new Point(r, c), heightMap);
+    }
+
     public char[][] getHeightMap(List<String> mapInput) {
         // [row][column]
         int numRows = mapInput.size();
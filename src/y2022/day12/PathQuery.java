@@ -0,0 +1,29 @@
+package y2022.day12;
+
+import utils.Point;
+
+/**
+ * One start to end question for a batch of searches over the same height map
+ */
+public class PathQuery {
+    private final Point start;
+    private final Point end;
+
+    public PathQuery(Point start, Point end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public Point getStart() {
+        return start;
+    }
+
+    public Point getEnd() {
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return start + " -> " + end;
+    }
+}
@@ -0,0 +1,70 @@
+package y2022.day12;
+
+import java.util.Arrays;
+
+/**
+ * Everything one search writes, kept apart from the GridGraph so a single graph can be searched by many threads at
+ * once, each with its own context.  A context itself is only for one thread at a time.
+ *
+ * Rather than clearing the arrays before every query, each query bumps epoch and a slot only counts if its stamp
+ * matches the current epoch, anything older reads as unreached.  So reusing a context for the next query is O(1).
+ */
+public class SearchContext {
+    private final int[] distance;
+    private final int[] parent;
+    private final int[] stamp;         // Epoch distance/parent were last written in
+    private final int[] closedStamp;   // Epoch the node was last expanded in (A*)
+    final int[] queue;                 // BFS scratch
+    final IndexedMinHeap frontier;     // A* scratch
+    private int epoch = 0;
+
+    public SearchContext(int size) {
+        distance = new int[size];
+        parent = new int[size];
+        stamp = new int[size];
+        closedStamp = new int[size];
+        queue = new int[size];
+        frontier = new IndexedMinHeap(size);
+    }
+
+    // Forget the previous query
+    void beginQuery() {
+        epoch++;
+        frontier.clear();
+
+        // Once every 4 billion or so queries the epoch wraps, so really clear everything just that once
+        if (epoch == 0) {
+            Arrays.fill(stamp, 0);
+            Arrays.fill(closedStamp, 0);
+            epoch = 1;
+        }
+    }
+
+    public boolean isReached(int nodeId) {
+        return stamp[nodeId] == epoch;
+    }
+
+    // Steps from the source of the last query, or GridGraph.UNREACHABLE
+    public int getDistance(int nodeId) {
+        return stamp[nodeId] == epoch ? distance[nodeId] : GridGraph.UNREACHABLE;
+    }
+
+    // Node we stepped from to get here in the last query, or GridGraph.NO_PARENT (also for the source)
+    public int getParent(int nodeId) {
+        return stamp[nodeId] == epoch ? parent[nodeId] : GridGraph.NO_PARENT;
+    }
+
+    void reach(int nodeId, int nodeDistance, int nodeParent) {
+        distance[nodeId] = nodeDistance;
+        parent[nodeId] = nodeParent;
+        stamp[nodeId] = epoch;
+    }
+
+    boolean isClosed(int nodeId) {
+        return closedStamp[nodeId] == epoch;
+    }
+
+    void close(int nodeId) {
+        closedStamp[nodeId] = epoch;
+    }
+}
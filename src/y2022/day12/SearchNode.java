@@ -4,6 +4,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import utils.Point;
 
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -15,8 +16,9 @@ public class SearchNode {
     private Point position;  // This identifies it in the height map for ease of debugging later
     private Map<SearchNode, Integer> adjacentNodes = Maps.newHashMap();  // Adjacency list, with edge weight
 
-    private List<SearchNode> shortestPath = Lists.newLinkedList();  // Short path to this node from source, used in our search algorithm
+    private SearchNode predecessor;  // Previous node on the shortest path from source, null for the source itself
     private Integer weightFromSource = Integer.MAX_VALUE;  // Initialize max distance because we haven't performed the search yet
+    private int index = -1;  // Position of this node in its graph, lets the search keep its bookkeeping in arrays
 
     public void addAdjacency(SearchNode destination, Integer edgeWeight) {
         adjacentNodes.put(destination, edgeWeight);
@@ -39,12 +41,31 @@ public class SearchNode {
         return adjacentNodes;
     }
 
+    // Short path to this node from source (not including this node), built on demand by walking the predecessors
     public List<SearchNode> getShortestPath() {
+        LinkedList<SearchNode> shortestPath = Lists.newLinkedList();
+
+        for (SearchNode node = predecessor; node != null; node = node.getPredecessor()) {
+            shortestPath.addFirst(node);
+        }
+
         return shortestPath;
     }
 
-    public void setShortestPath(List<SearchNode> path) {
-        shortestPath = path;
+    public SearchNode getPredecessor() {
+        return predecessor;
+    }
+
+    public void setPredecessor(SearchNode predecessor) {
+        this.predecessor = predecessor;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
     }
 
     public Point getPosition() {
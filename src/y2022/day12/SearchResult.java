@@ -0,0 +1,27 @@
+package y2022.day12;
+
+/**
+ * Outcome of a single point to point search, along with how much of the map it had to look at to get there
+ */
+public class SearchResult {
+    private final int pathLength;     // GridGraph.UNREACHABLE if there's no path
+    private final int nodesExpanded;  // Number of nodes taken off the frontier and had their neighbours looked at
+
+    public SearchResult(int pathLength, int nodesExpanded) {
+        this.pathLength = pathLength;
+        this.nodesExpanded = nodesExpanded;
+    }
+
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    public int getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult{pathLength=" + pathLength + ", nodesExpanded=" + nodesExpanded + "}";
+    }
+}
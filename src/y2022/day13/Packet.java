@@ -1,39 +1,50 @@
 package y2022.day13;
 
-import java.util.Comparator;
-import java.util.Objects;
+import java.util.Arrays;
 
 /**
  * Simply represents a known parsed packet, which is really just a handle to a fully formed/parsed Item
  * But unlike Item, this will implement Comparable so we can sort packets per part 2
+ * Sorting compares token streams (see PacketTokens) encoded once up front, rather than walking the Item trees
  */
-public class Packet implements Comparable {
-    private Item item;
+public class Packet implements Comparable<Packet> {
+    private Item item;   // Lazy when we were given tokens
+    private int[] tokens;
 
     public Packet (Item i) {
-        item = i;
+        setItem(i);
+    }
+
+    // Already have the tokens, eg from PacketReader, the Item is only built if someone asks for it
+    public Packet (int[] tokens) {
+        this.tokens = tokens;
     }
 
     public Item getItem() {
+        if (item == null) {
+            item = PacketTokens.toItem(tokens);
+        }
         return item;
     }
 
     public void setItem(Item item) {
         this.item = item;
+        this.tokens = PacketTokens.encode(item);
+    }
+
+    public int[] getTokens() {
+        return tokens;
     }
 
     @Override
-    public int compareTo(Object o) {
-        Packet otherPacket = (Packet)o;
-        Order order = PacketPair.correctOrderRecurse(item, otherPacket.getItem());
-
-        if (order == Order.IN) {
-            return -1;
-        } else if (order == Order.OUT) {
-            return 1;
+    public int compareTo(Packet otherPacket) {
+        int order = PacketTokens.compare(tokens, otherPacket.getTokens());
+
+        if (order == 0 && this != otherPacket) {
+            throw new RuntimeException("There shouldn't be ties amongst packets");
         }
 
-        throw new RuntimeException("There shouldn't be ties amongst packets");
+        return order;
     }
 
     @Override
@@ -41,12 +52,12 @@ public class Packet implements Comparable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Packet packet = (Packet) o;
-        return Objects.equals(item, packet.item);
+        return Arrays.equals(tokens, packet.tokens);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(item);
+        return Arrays.hashCode(tokens);
     }
 
 
@@ -178,14 +178,14 @@ public class PacketComparor {
         int sepIndex2 = 0;
 
         for (int i=0; i<packetList.size(); i++) {
-            String ps = packetList.get(i).getItem().toString();
+            String ps = PacketTokens.toString(packetList.get(i).getTokens());
             System.out.println(ps);
 
-            if (ps.equals("[[2,]]")) {
+            if (ps.equals("[[2]]")) {
                 sepIndex1 = i+1;
             }
 
-            if (ps.equals("[[6,]]")) {
+            if (ps.equals("[[6]]")) {
                 sepIndex2 = i+1;
             }
         }
@@ -199,21 +199,21 @@ public class PacketComparor {
         List<Packet> packets = Lists.newArrayList();
 
         for (int i=0; i<input.size(); i+=3) {
-            Packet pl = new Packet(parsePacket(input.get(i)));
-            Packet pr = new Packet(parsePacket(input.get(i+1)));
+            Packet pl = new Packet(PacketReader.parse(input.get(i)));
+            Packet pr = new Packet(PacketReader.parse(input.get(i+1)));
 
             packets.add(pl);
             packets.add(pr);
         }
 
         // Also add two separator packets
-        packets.add(new Packet(parsePacket("[[2]]")));
-        packets.add(new Packet(parsePacket("[[6]]")));
+        packets.add(new Packet(PacketReader.parse("[[2]]")));
+        packets.add(new Packet(PacketReader.parse("[[6]]")));
 
         System.out.println("\n\n===============================================");
 
         for (Packet p : packets) {
-            System.out.println("Packet: " + p.getItem());
+            System.out.println("Packet: " + PacketTokens.toString(p.getTokens()));
         }
 
         return packets;
@@ -225,10 +225,10 @@ public class PacketComparor {
 
         int pairNum = 1;
         for (int i=0; i<input.size(); i+=3) {
-            Item left = parsePacket(input.get(i));
-            System.out.println("Parsed Left: " + left.toString());
-            Item right = parsePacket(input.get(i+1));
-            System.out.println("Parsed right: " + right.toString());
+            int[] left = PacketReader.parse(input.get(i));
+            System.out.println("Parsed Left: " + PacketTokens.toString(left));
+            int[] right = PacketReader.parse(input.get(i+1));
+            System.out.println("Parsed right: " + PacketTokens.toString(right));
 
             PacketPair pair = new PacketPair(left, right, pairNum);
             pairs.add(pair);
@@ -239,83 +239,11 @@ public class PacketComparor {
 
         for (PacketPair p : pairs) {
             System.out.println("Pair " + p.getPosition());
-            System.out.println("Left: " + p.getLeft());
-            System.out.println("Right:" + p.getRight());
+            System.out.println("Left: " + PacketTokens.toString(p.getLeftTokens()));
+            System.out.println("Right:" + PacketTokens.toString(p.getRightTokens()));
             System.out.println("Is correct order: " + p.isCorrectOrder());
         }
 
         return pairs;
     }
-
-    // Call this recursively?
-    private Item parsePacket(String line) {
-        List<Item> items = parseList(line);
-        return items.get(0); // Do to how we parse, we have already wrapped the list of items, unwrap here
-    }
-
-    private List<Item> parseList(String line) {
-        // Parse until we find a [ and recurse, or find a ] and can return our list
-        List<Item> items = Lists.newArrayList();
-
-        int i=0;  // Our current position scanning the string
-        while (i<line.length()) {
-            System.out.println("Iteration i=" + i + ", line=" + line);
-
-            if (line.charAt(i) == ']') {
-                System.out.println("End of list, returning");
-                return items;
-
-            } else if (line.charAt(i) == '[') {
-                // Recurse to parse the new sublist, than move our pointer forward
-                String withinBrackets = getStringWithinBrackets(line.substring(i, line.length()));
-                Item item = Item.newListItem(parseList(withinBrackets.substring(1, withinBrackets.length()))); // Start at pos 1 because we've already parsed the open bracket
-                // Advance i to the close of the list we just parsed
-                System.out.println("Advancing i from: " + i);
-                //i = line.indexOf("]", i) + 1;
-                i = i + withinBrackets.length();
-                System.out.println("Advanced i to: " + i);
-                items.add(item);
-
-            } else if (line.charAt(i) == ',') {
-                // Simple move past the comma
-                i+=1;
-
-            } else if (line.substring(i,i+2).matches("10")) {
-                // It's absolutely dirty that the entirety of the sample only uses 0-9, but you have to find the surprise
-                // that 10 is valid by digging into your individual input.  Dirty.
-                Integer v = Integer.parseInt(line.substring(i,i+2));
-                System.out.println("Parsed int: " + v);
-                items.add(Item.newValueItem(v));
-                i+=2;
-            }
-
-            else if (line.substring(i,i+1).matches("[0-9]")) {
-                Integer v = Integer.parseInt(line.substring(i,i+1));
-                System.out.println("Parsed int: " + v);
-                items.add(Item.newValueItem(v));
-                i+=1;
-            }
-        }
-
-        return items;
-    }
-
-    // Returns the substring corresponding to the matching brackets starting at the beginning of s, brackets inclusive
-    // eg [a[b,c],d],e]  returns [a[b,c],d]
-    private String getStringWithinBrackets(String s) {
-        int numOpen = 0;
-        for (int i=0; i<s.length(); i++) {
-            if (s.charAt(i) == '[') {
-                numOpen++;
-            } else if (s.charAt(i) == ']') {
-                numOpen--;
-            }
-
-            if (numOpen == 0) {
-                return s.substring(0, i+1);
-            }
-        }
-
-        throw new RuntimeException("String " + s + " wasn't balanced");
-    }
 }
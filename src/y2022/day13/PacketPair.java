@@ -1,20 +1,30 @@
 package y2022.day13;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
  * A pair of packets, their position number, and stored results if they are in the right order
+ * The packets are held as token streams (see PacketTokens), the Items are only built if someone asks for them
  */
 public class PacketPair {
-    private Item left;
+    private int[] leftTokens;
+    private int[] rightTokens;
+    private Item left;   // Lazy, from leftTokens
     private Item right;
     private Integer position;
     private Boolean isCorrectOrder;
 
+    public PacketPair(int[] leftTokens, int[] rightTokens, Integer position) {
+        this.leftTokens = leftTokens;
+        this.rightTokens = rightTokens;
+        this.position = position;
+    }
+
     public PacketPair(Item left, Item right, Integer position) {
+        this(PacketTokens.encode(left), PacketTokens.encode(right), position);
         this.left = left;
         this.right = right;
-        this.position = position;
     }
 
     public Boolean isCorrectOrder() {
@@ -22,16 +32,13 @@ public class PacketPair {
             return isCorrectOrder;
         }
 
-        Item l = left;
-        Item r = right;
-
-        // Lazy load
-        Order order = correctOrderRecurse(l, r);
+        // Lazy load, same answer as correctOrderRecurse(left, right) without building any Items
+        int order = PacketTokens.compare(leftTokens, rightTokens);
 
-        if (order == Order.IN) {
+        if (order < 0) {
             isCorrectOrder = true;
             return true;
-        } else if (order == Order.OUT) {
+        } else if (order > 0) {
             isCorrectOrder = false;
             return false;
         } else {
@@ -101,20 +108,38 @@ public class PacketPair {
         isCorrectOrder = correctOrder;
     }
 
+    public int[] getLeftTokens() {
+        return leftTokens;
+    }
+
+    public int[] getRightTokens() {
+        return rightTokens;
+    }
+
     public Item getLeft() {
+        if (left == null) {
+            left = PacketTokens.toItem(leftTokens);
+        }
         return left;
     }
 
     public void setLeft(Item left) {
         this.left = left;
+        this.leftTokens = PacketTokens.encode(left);
+        this.isCorrectOrder = null;
     }
 
     public Item getRight() {
+        if (right == null) {
+            right = PacketTokens.toItem(rightTokens);
+        }
         return right;
     }
 
     public void setRight(Item right) {
         this.right = right;
+        this.rightTokens = PacketTokens.encode(right);
+        this.isCorrectOrder = null;
     }
 
     public Integer getPosition() {
@@ -130,11 +155,11 @@ public class PacketPair {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         PacketPair that = (PacketPair) o;
-        return Objects.equals(left, that.left) && Objects.equals(right, that.right) && Objects.equals(position, that.position) && Objects.equals(isCorrectOrder, that.isCorrectOrder);
+        return Arrays.equals(leftTokens, that.leftTokens) && Arrays.equals(rightTokens, that.rightTokens) && Objects.equals(position, that.position) && Objects.equals(isCorrectOrder, that.isCorrectOrder);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(left, right, position, isCorrectOrder);
+        return Objects.hash(Arrays.hashCode(leftTokens), Arrays.hashCode(rightTokens), position, isCorrectOrder);
     }
 }
@@ -0,0 +1,185 @@
+package y2022.day13;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streams packets ([1,[22,3],[]]) straight out of the bytes of the input as PacketTokens, one packet per non blank
+ * line, in a single pass with no recursion and no substrings.  Values can be any number of digits and lists can nest as
+ * deep as you like, a list needs no state beyond its OPEN token so the stack of open lists is just its depth.
+ *
+ * Bytes can be fed in however they're chunked, a packet or a number split across two chunks carries on where it left
+ * off.  Anything that isn't a well formed packet throws, including empty elements ([1,,2]) and missing commas ([1 2]).
+ */
+public class PacketReader {
+    public interface PacketConsumer {
+        // tokens is reused for the next packet, copy the first length of them if you want to keep them
+        void accept(int[] tokens, int length);
+    }
+
+    // What came last on the line, which decides what's allowed next
+    private static final int LINE_START = 0;  // Nothing yet, next can only be a [ or the end of a blank line
+    private static final int OPENED = 1;      // Just had a [, next can be a value, a [ or a ]
+    private static final int COMMA = 2;       // Next has to be a value or a [
+    private static final int ELEMENT = 3;     // After a value or a list, a "," or a ] (or the line ends)
+
+    private final PacketConsumer consumer;
+    private int[] tokens = new int[64];
+    private int numTokens = 0;
+    private int depth = 0;          // How many lists are open
+    private int last = LINE_START;
+    private boolean inNumber = false;
+    private int value = 0;
+    private int line = 1;
+
+    private PacketReader(PacketConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    public static void readFile(String fileName, PacketConsumer consumer) throws IOException {
+        try (InputStream in = new FileInputStream(fileName)) {
+            read(in, consumer);
+        }
+    }
+
+    public static void read(InputStream in, PacketConsumer consumer) throws IOException {
+        PacketReader reader = new PacketReader(consumer);
+        byte[] buffer = new byte[1 << 16];
+
+        int bufferLength;
+        while ((bufferLength = in.read(buffer)) >= 0) {
+            reader.feed(buffer, 0, bufferLength);
+        }
+
+        reader.finish();
+    }
+
+    // Every packet in bytes[off, off+len), already in memory so no stream or buffer needed
+    public static void read(byte[] bytes, int off, int len, PacketConsumer consumer) {
+        PacketReader reader = new PacketReader(consumer);
+        reader.feed(bytes, off, len);
+        reader.finish();
+    }
+
+    // A single packet, eg one line of the input
+    public static int[] parse(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+        int[][] packet = new int[1][];
+
+        read(bytes, 0, bytes.length, (tokens, length) -> {
+            if (packet[0] != null) {
+                throw new RuntimeException("Expected one packet but found more: " + line);
+            }
+            packet[0] = Arrays.copyOf(tokens, length);
+        });
+
+        if (packet[0] == null) {
+            throw new RuntimeException("No packet found in: " + line);
+        }
+
+        return packet[0];
+    }
+
+    // The state lives in locals while we loop, and goes back in the fields for the next chunk
+    private void feed(byte[] bytes, int off, int len) {
+        int[] tokens = this.tokens;
+        int numTokens = this.numTokens;
+        int depth = this.depth;
+        int last = this.last;
+        boolean inNumber = this.inNumber;
+        int value = this.value;
+        int line = this.line;
+
+        for (int i=off; i<off+len; i++) {
+            int b = bytes[i];
+
+            if (b >= '0' && b <= '9') {
+                if (!inNumber) {
+                    if (last == LINE_START) {
+                        throw new RuntimeException("Value outside of any list on line " + line);
+                    } else if (last == ELEMENT) {
+                        throw new RuntimeException("Missing comma before a value on line " + line);
+                    }
+                    inNumber = true;
+                }
+
+                if (value >= Integer.MAX_VALUE / 10 && (value > Integer.MAX_VALUE / 10 || b > '7')) {
+                    throw new RuntimeException("Value too big for an int on line " + line);
+                }
+                value = value * 10 + (b - '0');
+                continue;
+            }
+
+            // Room for the number we might be finishing plus the bracket we might be adding
+            if (numTokens + 2 > tokens.length) {
+                tokens = Arrays.copyOf(tokens, tokens.length * 2);
+            }
+
+            // Any non digit ends the number we were in
+            if (inNumber) {
+                tokens[numTokens++] = value;
+                inNumber = false;
+                value = 0;
+                last = ELEMENT;
+            }
+
+            if (b == ',') {
+                if (last != ELEMENT || depth == 0) {
+                    throw new RuntimeException("Empty element on line " + line);
+                }
+                last = COMMA;
+            } else if (b == '[') {
+                if (last == ELEMENT) {
+                    throw new RuntimeException((depth == 0 ? "More than one packet" : "Missing comma before a list") + " on line " + line);
+                }
+                tokens[numTokens++] = PacketTokens.OPEN;
+                depth++;
+                last = OPENED;
+            } else if (b == ']') {
+                if (depth == 0) {
+                    throw new RuntimeException("Unmatched ] on line " + line);
+                } else if (last == COMMA) {
+                    throw new RuntimeException("Empty element on line " + line);
+                }
+                tokens[numTokens++] = PacketTokens.CLOSE;
+                depth--;
+                last = ELEMENT;
+            } else if (b == '\n') {
+                endLine(tokens, numTokens, depth, line);
+                numTokens = 0;
+                last = LINE_START;
+                line++;
+            } else if (b != '\r' && b != ' ') {
+                throw new RuntimeException("Unexpected character '" + (char)b + "' on line " + line);
+            }
+        }
+
+        this.tokens = tokens;
+        this.numTokens = numTokens;
+        this.depth = depth;
+        this.last = last;
+        this.inNumber = inNumber;
+        this.value = value;
+        this.line = line;
+    }
+
+    // The last line might not have a newline.  A number still going can only be inside a list, the checks when it
+    // started saw to that, so the line is unclosed either way
+    private void finish() {
+        endLine(tokens, numTokens, depth, line);
+    }
+
+    // Hands over the line's packet, blank lines separate the pairs, they aren't packets
+    private void endLine(int[] tokens, int numTokens, int depth, int line) {
+        if (depth != 0) {
+            throw new RuntimeException(depth + " unclosed [ on line " + line);
+        }
+
+        if (numTokens > 0) {
+            consumer.accept(tokens, numTokens);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package y2022.day13;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A packet flattened into a token stream, OPEN and CLOSE for the brackets and anything else is an integer value, eg
+ * [1,[2,3],[]] is OPEN 1 OPEN 2 3 CLOSE OPEN CLOSE CLOSE.  Commas aren't needed, every value is its own token.
+ *
+ * Comparing two streams just walks a cursor along each, so there's no tree to build or walk and nothing gets allocated.
+ */
+public class PacketTokens {
+    public static final int OPEN = -1;   // Values are never negative, so these can't clash with one
+    public static final int CLOSE = -2;
+
+    private PacketTokens() {
+    }
+
+    public static int[] encode(Item item) {
+        int[] tokens = new int[countTokens(item)];
+        int end = encode(item, tokens, 0);
+
+        if (end != tokens.length) {
+            throw new RuntimeException("Encoded " + end + " tokens but counted " + tokens.length);
+        }
+
+        return tokens;
+    }
+
+    private static int countTokens(Item item) {
+        if (item.getType() == ItemType.VALUE) {
+            return 1;
+        }
+
+        int count = 2;  // OPEN and CLOSE
+        for (Item i : item.getItems()) {
+            count += countTokens(i);
+        }
+        return count;
+    }
+
+    // Back to an Item tree, using a stack of the lists still open rather than recursing, so any depth is fine
+    public static Item toItem(int[] tokens) {
+        Deque<Item> openLists = new ArrayDeque<>();
+        Item root = null;
+
+        for (int token : tokens) {
+            if (token == CLOSE) {
+                if (openLists.isEmpty()) {
+                    throw new RuntimeException("Unmatched CLOSE in " + toString(tokens));
+                }
+                openLists.pop();
+                continue;
+            }
+
+            Item item = token == OPEN ? Item.newListItem() : Item.newValueItem(token);
+            if (openLists.isEmpty()) {
+                if (root != null) {
+                    throw new RuntimeException("More than one packet in " + toString(tokens));
+                }
+                root = item;
+            } else {
+                openLists.peek().addItem(item);
+            }
+
+            if (token == OPEN) {
+                openLists.push(item);
+            }
+        }
+
+        if (root == null || !openLists.isEmpty()) {
+            throw new RuntimeException("Unbalanced packet " + toString(tokens));
+        }
+
+        return root;
+    }
+
+    // Writes item's tokens starting at pos, returns the position after them
+    private static int encode(Item item, int[] tokens, int pos) {
+        if (item.getType() == ItemType.VALUE) {
+            if (item.getValue() < 0) {
+                throw new RuntimeException("Packet values can't be negative: " + item.getValue());
+            }
+            tokens[pos] = item.getValue();
+            return pos + 1;
+        }
+
+        tokens[pos++] = OPEN;
+        for (Item i : item.getItems()) {
+            pos = encode(i, tokens, pos);
+        }
+        tokens[pos++] = CLOSE;
+        return pos;
+    }
+
+    // Same ordering as PacketPair.correctOrderRecurse: negative if left is in the right order (IN), positive if it's out
+    // of order (OUT), 0 for a tie (CONTINUE all the way to the end).
+    //
+    // When a value meets a list, rather than wrapping the value in a new list we pretend it was, the value side doesn't
+    // move its cursor for the OPEN it never had, and owes a CLOSE for every list it was wrapped in once its value has
+    // been matched.  Those owed CLOSEs get compared like any other token before its cursor moves on
+    public static int compare(int[] left, int[] right) {
+        int l = 0;
+        int r = 0;
+        int leftWrapped = 0;      // Pretend OPENs the current left value is wrapped in
+        int rightWrapped = 0;
+        int leftOwedCloses = 0;   // Pretend CLOSEs still to come before left[l]
+        int rightOwedCloses = 0;
+
+        while (l < left.length || r < right.length || leftOwedCloses > 0 || rightOwedCloses > 0) {
+            int leftToken = leftOwedCloses > 0 ? CLOSE : tokenAt(left, l);
+            int rightToken = rightOwedCloses > 0 ? CLOSE : tokenAt(right, r);
+
+            if (leftToken == CLOSE || rightToken == CLOSE) {
+                if (leftToken != rightToken) {
+                    // Whichever list runs out first is the smaller one
+                    return leftToken == CLOSE ? -1 : 1;
+                }
+            } else if (leftToken >= 0 && rightToken >= 0) {
+                if (leftToken != rightToken) {
+                    return Integer.compare(leftToken, rightToken);
+                }
+
+                // Values match, anything either one was wrapped in closes now
+                l++;
+                r++;
+                leftOwedCloses = leftWrapped;
+                rightOwedCloses = rightWrapped;
+                leftWrapped = 0;
+                rightWrapped = 0;
+                continue;
+            } else if (leftToken >= 0) {
+                // Left value meets a right list, wrap the left value, only the right moves past its OPEN
+                leftWrapped++;
+                r++;
+                continue;
+            } else if (rightToken >= 0) {
+                rightWrapped++;
+                l++;
+                continue;
+            }
+
+            // Both OPEN or both CLOSE
+            if (leftOwedCloses > 0) {
+                leftOwedCloses--;
+            } else {
+                l++;
+            }
+            if (rightOwedCloses > 0) {
+                rightOwedCloses--;
+            } else {
+                r++;
+            }
+        }
+
+        return 0;
+    }
+
+    // Past the end of a stream acts like a CLOSE, so a short malformed stream still compares rather than blowing up
+    private static int tokenAt(int[] tokens, int pos) {
+        return pos < tokens.length ? tokens[pos] : CLOSE;
+    }
+
+    public static String toString(int[] tokens) {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<tokens.length; i++) {
+            int token = tokens[i];
+            if (token == CLOSE) {
+                sb.append(']');
+            } else {
+                // A comma goes before anything that follows a value or a closed list, but never straight after a [
+                if (i > 0 && tokens[i-1] != OPEN) {
+                    sb.append(',');
+                }
+                sb.append(token == OPEN ? "[" : String.valueOf(token));
+            }
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,272 @@
+package y2022.day14;
+
+import utils.Point;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Slice of the cave sized to fit the rock paths, stored as one bitset per row (bit i of a row is x = minX + i).
+ *
+ * rock only ever holds the scanned rock (and the part 2 floor), blocked holds rock plus any sand that has settled, so
+ * the simulation only ever needs to look at blocked.  Anything outside the grid's columns is treated as open air.
+ */
+public class CaveGrid {
+    public static final int SOURCE_X = 500;  // Sand pours from (500,0)
+    public static final int SOURCE_Y = 0;
+
+    private final int minX;        // Left most column held
+    private final int width;       // Number of columns held
+    private final int height;      // Number of rows held, 0..height-1
+    private final int maxRockY;    // Deepest scanned rock, anything falling past this is in the abyss
+    private final boolean hasFloor;
+    private final int wordsPerRow;
+    private final long[] rock;
+    private final long[] blocked;
+
+    private CaveGrid(int minX, int maxX, int height, int maxRockY, boolean hasFloor) {
+        this.minX = minX;
+        this.width = maxX - minX + 1;
+        this.height = height;
+        this.maxRockY = maxRockY;
+        this.hasFloor = hasFloor;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.rock = new long[wordsPerRow * height];
+        this.blocked = new long[wordsPerRow * height];
+    }
+
+    // Part 1 grid, just wide enough for the rock plus a column either side for sand to slide off into the abyss
+    public static CaveGrid withoutFloor(List<List<Point>> rockPaths) {
+        CaveGrid grid = sizedFor(findBounds(rockPaths), false);
+        grid.addRockPaths(rockPaths);
+        return grid;
+    }
+
+    // Part 2 grid, with the infinite floor 2 below the deepest rock
+    public static CaveGrid withFloor(List<List<Point>> rockPaths) {
+        CaveGrid grid = sizedFor(findBounds(rockPaths), true);
+        grid.addRockPaths(rockPaths);
+        return grid;
+    }
+
+    // Same grids but streamed straight from the scan file.  We have to know the bounds before we can allocate, so the
+    // file is streamed twice, once for the bounds and once to draw the rock, without ever holding the paths in memory
+    public static CaveGrid fromRockFile(String fileName, boolean withFloor) throws IOException {
+        int[] bounds = {Integer.MAX_VALUE, Integer.MIN_VALUE, 0};
+        RockPathReader.readFile(fileName, (x1, y1, x2, y2) -> {
+            bounds[0] = Math.min(bounds[0], Math.min(x1, x2));
+            bounds[1] = Math.max(bounds[1], Math.max(x1, x2));
+            bounds[2] = Math.max(bounds[2], Math.max(y1, y2));
+        });
+
+        CaveGrid grid = sizedFor(emptyBoundsAtSource(bounds), withFloor);
+        RockPathReader.readFile(fileName, grid::addRockLine);
+        return grid;
+    }
+
+    // bounds is {minX, maxX, maxY} of the rock.  Without a floor we only need a column either side of the rock for sand
+    // to slide off into the abyss.  With a floor, sand can only spread one column per row it falls, so the pile can
+    // never be wider than floorY either side of the source, and we don't need the floor any wider than that
+    private static CaveGrid sizedFor(int[] bounds, boolean withFloor) {
+        if (!withFloor) {
+            int minX = Math.min(bounds[0], SOURCE_X) - 1;
+            int maxX = Math.max(bounds[1], SOURCE_X) + 1;
+            return new CaveGrid(minX, maxX, bounds[2] + 1, bounds[2], false);
+        }
+
+        int floorY = bounds[2] + 2;
+        int minX = Math.min(bounds[0], SOURCE_X - floorY) - 1;
+        int maxX = Math.max(bounds[1], SOURCE_X + floorY) + 1;
+
+        CaveGrid grid = new CaveGrid(minX, maxX, floorY + 1, floorY, true);
+        grid.addRockLine(minX, floorY, maxX, floorY);
+        return grid;
+    }
+
+    // Returns {minX, maxX, maxY} over every point of every path
+    private static int[] findBounds(List<List<Point>> rockPaths) {
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = 0;
+
+        for (List<Point> path : rockPaths) {
+            for (Point p : path) {
+                minX = Math.min(minX, p.x);
+                maxX = Math.max(maxX, p.x);
+                maxY = Math.max(maxY, p.y);
+            }
+        }
+
+        return emptyBoundsAtSource(new int[] {minX, maxX, maxY});
+    }
+
+    // No rock at all, just centre the grid on the source
+    private static int[] emptyBoundsAtSource(int[] bounds) {
+        if (bounds[0] == Integer.MAX_VALUE) {
+            bounds[0] = SOURCE_X;
+            bounds[1] = SOURCE_X;
+        }
+
+        return bounds;
+    }
+
+    private void addRockPaths(List<List<Point>> rockPaths) {
+        for (List<Point> path : rockPaths) {
+            // Fill in rocks from previous point to current point, starting a 1 so there is a previous
+            for (int i=1; i<path.size(); i++) {
+                Point pStart = path.get(i-1);
+                Point pEnd = path.get(i);
+                addRockLine(pStart.x, pStart.y, pEnd.x, pEnd.y);
+            }
+
+            // A path of one point is still a rock
+            if (path.size() == 1) {
+                addRockLine(path.get(0).x, path.get(0).y, path.get(0).x, path.get(0).y);
+            }
+        }
+    }
+
+    // Horizontal or vertical line of rock, inclusive of both end points
+    public void addRockLine(int x1, int y1, int x2, int y2) {
+        if (y1 == y2) {
+            setRowRange(rock, Math.min(x1, x2), Math.max(x1, x2), y1);
+            setRowRange(blocked, Math.min(x1, x2), Math.max(x1, x2), y1);
+        } else if (x1 == x2) {
+            for (int y=Math.min(y1, y2); y<=Math.max(y1, y2); y++) {
+                setBit(rock, x1, y);
+                setBit(blocked, x1, y);
+            }
+        } else {
+            throw new RuntimeException("Rock lines must be horizontal or vertical: (" + x1 + "," + y1 + ") -> (" + x2 + "," + y2 + ")");
+        }
+    }
+
+    public boolean isBlocked(int x, int y) {
+        int col = x - minX;
+        if (col < 0 || col >= width || y < 0 || y >= height) {
+            return false;
+        }
+
+        return (blocked[y * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    // A grain of sand comes to rest at (x,y)
+    public void settle(int x, int y) {
+        setBit(blocked, x, y);
+    }
+
+    // True once a grain at this depth has nothing left below it to land on
+    public boolean isInAbyss(int y) {
+        return !hasFloor && y >= maxRockY;
+    }
+
+    // Part 2 without dropping any grains.  With a floor, a cell ends up full of sand exactly when it isn't rock and one
+    // of the three cells above it (up-left, up, up-right) is full, so work down the rows spreading the previous row one
+    // bit each way (shift-or) and knocking out the rock (and-not).  Returns the number of cells filled, source included
+    public int countFloodFilledSand() {
+        if (!hasFloor) {
+            throw new RuntimeException("Flood fill only works with a floor, part 1 sand can fall into the abyss");
+        }
+
+        long[] previous = new long[wordsPerRow];
+        long[] current = new long[wordsPerRow];
+        long tailMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;  // Drop anything shifted past the last column
+
+        int sourceCol = SOURCE_X - minX;
+        previous[sourceCol >>> 6] = (1L << sourceCol) & ~rock[SOURCE_Y * wordsPerRow + (sourceCol >>> 6)];
+        int filled = Long.bitCount(previous[sourceCol >>> 6]);
+
+        for (int y=SOURCE_Y+1; y<height; y++) {
+            boolean anyFilled = false;
+            int rowStart = y * wordsPerRow;
+
+            for (int w=0; w<wordsPerRow; w++) {
+                long above = previous[w];
+                long carryFromLeft = w > 0 ? previous[w-1] >>> 63 : 0;                 // up-left of bit 0
+                long carryFromRight = w < wordsPerRow-1 ? previous[w+1] << 63 : 0;     // up-right of bit 63
+
+                long spread = above | (above << 1) | carryFromLeft | (above >>> 1) | carryFromRight;
+                current[w] = spread & ~rock[rowStart + w];
+            }
+            current[wordsPerRow-1] &= tailMask;
+
+            for (int w=0; w<wordsPerRow; w++) {
+                filled += Long.bitCount(current[w]);
+                anyFilled |= current[w] != 0;
+            }
+
+            if (!anyFilled) {
+                break;
+            }
+
+            long[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return filled;
+    }
+
+    private void setBit(long[] bits, int x, int y) {
+        int col = x - minX;
+        if (col < 0 || col >= width || y < 0 || y >= height) {
+            throw new RuntimeException("Point (" + x + "," + y + ") is outside the cave grid");
+        }
+
+        bits[y * wordsPerRow + (col >>> 6)] |= 1L << col;
+    }
+
+    // Sets every bit from fromX to toX inclusive on row y a whole word at a time
+    private void setRowRange(long[] bits, int fromX, int toX, int y) {
+        setBit(bits, fromX, y);  // Bounds check both ends
+        setBit(bits, toX, y);
+
+        int fromCol = fromX - minX;
+        int toCol = toX - minX;
+        int fromWord = fromCol >>> 6;
+        int toWord = toCol >>> 6;
+        long fromMask = -1L << fromCol;          // Bits fromCol and up within its word
+        long toMask = -1L >>> (63 - (toCol & 63)); // Bits toCol and down within its word
+        int rowStart = y * wordsPerRow;
+
+        if (fromWord == toWord) {
+            bits[rowStart + fromWord] |= fromMask & toMask;
+            return;
+        }
+
+        bits[rowStart + fromWord] |= fromMask;
+        for (int w=fromWord+1; w<toWord; w++) {
+            bits[rowStart + w] = -1L;
+        }
+        bits[rowStart + toWord] |= toMask;
+    }
+
+    // Copies for anyone who wants to look at the grid while the simulation keeps going, see SnapshotWriter
+    public long[] copyRock() {
+        return rock.clone();
+    }
+
+    public long[] copyBlocked() {
+        return blocked.clone();
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean hasFloor() {
+        return hasFloor;
+    }
+}
@@ -0,0 +1,134 @@
+package y2022.day14;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams rock paths (498,4 -> 498,6 -> 496,6) straight out of the bytes of the scan, handing each straight segment to
+ * a consumer as soon as both of its end points have been read.  Nothing is split or collected, the only state is the
+ * previous point on the current line, so any size of scan is read with the same small buffer.
+ */
+public class RockPathReader {
+    // Where we are in a line, each line is x,y followed by any number of " -> x,y"
+    private static final int LINE_START = 0;   // Nothing read on this line yet, a blank line is fine
+    private static final int EXPECT_X = 1;     // Need the first digit of an x
+    private static final int IN_X = 2;
+    private static final int EXPECT_Y = 3;     // Had the comma, need the first digit of a y
+    private static final int IN_Y = 4;
+    private static final int ARROW_DASH = 5;   // Had the space of " -> ", need the -
+    private static final int ARROW_HEAD = 6;   // Need the >
+    private static final int ARROW_SPACE = 7;  // Need the space after the >
+    private static final int LINE_END = 8;     // Had a \r, need the \n
+
+    public interface SegmentConsumer {
+        void accept(int x1, int y1, int x2, int y2);
+    }
+
+    public static void readFile(String fileName, SegmentConsumer consumer) throws IOException {
+        try (InputStream in = new FileInputStream(fileName)) {
+            read(in, consumer);
+        }
+    }
+
+    // Only digits, "," between x and y, " -> " between points, and line endings are allowed.  Anything else, including a
+    // sign, a dangling x or a dangling arrow, throws rather than being read as some other rock
+    public static void read(InputStream in, SegmentConsumer consumer) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        int bufferLength = 0;
+        int bufferPos = 0;
+
+        int prevX = 0, prevY = 0;
+        int x = 0;
+        int pointsOnLine = 0;
+        int state = LINE_START;
+        int value = 0;
+        int line = 1;
+
+        int b;
+        while (true) {
+            if (bufferPos == bufferLength) {
+                bufferLength = in.read(buffer);
+                bufferPos = 0;
+            }
+            b = bufferLength < 0 ? -1 : buffer[bufferPos++] & 0xFF;  // Mask so a 0xFF byte isn't mistaken for the end
+
+            if (b >= '0' && b <= '9') {
+                if (state == LINE_START || state == EXPECT_X) {
+                    state = IN_X;
+                } else if (state == EXPECT_Y) {
+                    state = IN_Y;
+                } else if (state != IN_X && state != IN_Y) {
+                    throw unexpected(b, line);
+                }
+
+                if (value >= Integer.MAX_VALUE / 10 && (value > Integer.MAX_VALUE / 10 || b > '7')) {
+                    throw new RuntimeException("Coordinate too big for an int on line " + line);
+                }
+                value = value * 10 + (b - '0');
+                continue;
+            }
+
+            if (state == IN_X) {
+                if (b == '\r' || b == '\n' || b == -1) {
+                    throw new RuntimeException("x without a y on line " + line);
+                } else if (b != ',') {
+                    throw unexpected(b, line);
+                }
+                x = value;
+                value = 0;
+                state = EXPECT_Y;
+                continue;
+            }
+
+            if (state == IN_Y) {
+                if (pointsOnLine > 0) {
+                    consumer.accept(prevX, prevY, x, value);
+                }
+                prevX = x;
+                prevY = value;
+                pointsOnLine++;
+                value = 0;
+
+                if (b == ' ') {
+                    state = ARROW_DASH;
+                    continue;
+                }
+                state = LINE_START;  // Only a line ending is allowed now, checked below
+                if (b != '\r' && b != '\n' && b != -1) {
+                    throw unexpected(b, line);
+                }
+            }
+
+            if (state == ARROW_DASH && b == '-') {
+                state = ARROW_HEAD;
+            } else if (state == ARROW_HEAD && b == '>') {
+                state = ARROW_SPACE;
+            } else if (state == ARROW_SPACE && b == ' ') {
+                state = EXPECT_X;
+            } else if (state == LINE_START && b == '\r') {
+                state = LINE_END;
+            } else if ((state == LINE_START || state == LINE_END) && (b == '\n' || b == -1)) {
+                // A path of one point is still a rock
+                if (pointsOnLine == 1) {
+                    consumer.accept(prevX, prevY, prevX, prevY);
+                }
+                pointsOnLine = 0;
+                state = LINE_START;
+                line++;
+            } else if (b == '\n' || b == -1) {
+                throw new RuntimeException("Line " + line + " ends part way through a point");
+            } else {
+                throw unexpected(b, line);
+            }
+
+            if (b == -1) {
+                return;
+            }
+        }
+    }
+
+    private static RuntimeException unexpected(int b, int line) {
+        return new RuntimeException("Unexpected character '" + (char)b + "' on line " + line);
+    }
+}
@@ -1,10 +1,9 @@
 package y2022.day14;
 
 import com.google.common.collect.Lists;
-import utils.InputReader;
 import utils.Point;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -35,207 +34,264 @@ import java.util.List;
  *
  */
 public class SandDropper {
-    public static void main(String[] args) throws FileNotFoundException {
-        InputReader reader = new InputReader();
-        List<String> inputLines = reader.loadStringsFromFile("./src/y2022/day14/RockInput.txt");
+    private SandObserver observer;  // Null when nobody is watching
+    private int[] batchXs;
+    private int[] batchYs;
+    private int batchCount;
 
+    public static void main(String[] args) throws IOException {
+        String rockFile = "./src/y2022/day14/RockInput.txt";
         SandDropper dropper = new SandDropper();
-        char[][] part1Grid = dropper.buildGrid(inputLines);
 
+        CaveGrid part1Grid = CaveGrid.fromRockFile(rockFile, false);
         int grainsDropped = dropper.dropSandUntilSpills(part1Grid);
         System.out.println("Part 1 Total grains dropped " + grainsDropped);
 
-        char[][] part2Grid = dropper.buildGridPart2(inputLines);
-        int grainsDroppedBeforeFull = dropper.dropSandUntilFull(part2Grid);
+        // To watch a run, eg:
+        //   try (SnapshotWriter snapshots = new SnapshotWriter(part1Grid, 100, "./sand_part1.rle")) {
+        //       dropper.setObserver(snapshots, 64);
+        //       dropper.dropSandUntilSpills(part1Grid);
+        //   }
+
+        CaveGrid part2Grid = CaveGrid.fromRockFile(rockFile, true);
+        int grainsDroppedBeforeFull = dropper.countSandUntilFull(part2Grid, false);  // true to cross check by dropping every grain
         System.out.println("Part 2 Grains dropped before full: " + grainsDroppedBeforeFull);
     }
 
+    // Settled grains are passed to the observer batchSize at a time, pass null to stop observing
+    public void setObserver(SandObserver observer, int batchSize) {
+        if (observer != null && batchSize < 1) {
+            throw new RuntimeException("Observer batch size must be at least 1, got " + batchSize);
+        }
+
+        this.observer = observer;
+        this.batchXs = observer != null ? new int[batchSize] : null;
+        this.batchYs = observer != null ? new int[batchSize] : null;
+        this.batchCount = 0;
+    }
+
     // Returns the number of sand grains dropped before hitting the abyss
-    public int dropSandUntilSpills(char[][] sandGrid) {
+    public int dropSandUntilSpills(CaveGrid grid) {
+        return dropSandUntilSpills(grid, SimulationMode.RESUME_PATH);
+    }
+
+    public int dropSandUntilSpills(CaveGrid grid, SimulationMode mode) {
+        if (mode == SimulationMode.RESUME_PATH) {
+            return finishObserving(dropSandResumingPath(grid));
+        }
+
         int sandDropped = 0;
         boolean peeredIntoTheAbyss = false;
 
         while (!peeredIntoTheAbyss) {
             sandDropped++;
-            peeredIntoTheAbyss = dropSingleGrainPart1(sandGrid);
+            peeredIntoTheAbyss = dropSingleGrainPart1(grid);
         }
 
-        return sandDropped-1; // Minus one as the answer doesn't want the grain dropped into the abyss
+        return finishObserving(sandDropped-1); // Minus one as the answer doesn't want the grain dropped into the abyss
     }
 
     // Returns the number of sand grains dropped before becoming full and stopping (Part 2)
-    public int dropSandUntilFull(char[][] sandGrid) {
+    public int dropSandUntilFull(CaveGrid grid) {
+        return dropSandUntilFull(grid, SimulationMode.RESUME_PATH);
+    }
+
+    public int dropSandUntilFull(CaveGrid grid, SimulationMode mode) {
+        if (mode == SimulationMode.RESUME_PATH) {
+            return finishObserving(dropSandResumingPath(grid));
+        }
+
         int sandDropped = 0;
         boolean fullUp = false;
 
         while (!fullUp) {
             sandDropped++;
-            fullUp = dropSingleGrainPart2(sandGrid);
+            fullUp = dropSingleGrainPart2(grid);
         }
 
-        return sandDropped;
+        return finishObserving(sandDropped);
     }
 
+    // Part 2 by flood filling the rows instead of dropping grains, see CaveGrid.countFloodFilledSand
+    // With validate on we also drop every grain on the same grid afterwards and blow up if the counts disagree
+    public int countSandUntilFull(CaveGrid grid, boolean validate) {
+        int floodFilled = grid.countFloodFilledSand();
 
-    // Returns true if the sand reached the abyss, false if it stopped
-    private boolean dropSingleGrainPart1(char[][] grid) {
-        // Sand pours from (500,0)
-        Point grain = new Point(500,0);
-        boolean stopped = false;
+        if (validate) {
+            int simulated = dropSandUntilFull(grid);
+            if (simulated != floodFilled) {
+                throw new RuntimeException("Flood fill counted " + floodFilled + " but the simulation dropped " + simulated);
+            }
+        }
+
+        return floodFilled;
+    }
+
+    // Both parts in one go.  Every grain follows exactly the same path as the grain before it, right up until the spot
+    // where that grain came to rest, so keep the path on a stack: the top is where the current grain is, settling a
+    // grain just pops it, and the next grain carries on falling from the position underneath.
+    // Stops when a grain falls into the abyss (part 1) or the grain at the source settles and empties the stack (part 2)
+    // Returns the number of grains that came to rest
+    private int dropSandResumingPath(CaveGrid grid) {
+        int[] pathX = new int[grid.getHeight() + 1];
+        int[] pathY = new int[grid.getHeight() + 1];
+        int depth = 0;
+        int settled = 0;
+
+        pathX[depth] = CaveGrid.SOURCE_X;
+        pathY[depth] = CaveGrid.SOURCE_Y;
+        depth++;
+
+        while (depth > 0) {
+            int x = pathX[depth-1];
+            int y = pathY[depth-1];
+
+            if (grid.isInAbyss(y)) {
+                return settled;
+            }
+
+            // Down, then down-left, then down-right, same as a single grain
+            int nextX;
+            if (!grid.isBlocked(x, y+1)) {
+                nextX = x;
+            } else if (!grid.isBlocked(x-1, y+1)) {
+                nextX = x-1;
+            } else if (!grid.isBlocked(x+1, y+1)) {
+                nextX = x+1;
+            } else {
+                settle(grid, x, y);
+                settled++;
+                depth--;
+                continue;
+            }
+
+            pathX[depth] = nextX;
+            pathY[depth] = y+1;
+            depth++;
+        }
 
-        while (!stopped) {
-            System.out.println("Grain at " + grain);
+        System.out.println("Totally full up");
+        return settled;
+    }
 
-            // Grain has fallen into the abyss, stop moving it
-            // Let's define the abyss as Y>=1000
-            if (grain.y+1 >= grid[0].length) {
+    // Returns true if the sand reached the abyss, false if it stopped
+    private boolean dropSingleGrainPart1(CaveGrid grid) {
+        int x = CaveGrid.SOURCE_X;
+        int y = CaveGrid.SOURCE_Y;
+
+        while (true) {
+            // Grain has fallen past the deepest rock, it's in the abyss
+            if (grid.isInAbyss(y)) {
                 return true;
             }
 
             // Can it move down?
-            if (grid[grain.x][grain.y+1] == '.') {
-                grain.move(0,1); // Move it down 1
+            if (!grid.isBlocked(x, y+1)) {
+                y++;
                 continue;
             }
 
             // Can't move down, can it move down-left?
-            if (grid[grain.x-1][grain.y+1] == '.') {
-                grain.move(-1,1);
+            if (!grid.isBlocked(x-1, y+1)) {
+                x--;
+                y++;
                 continue;
             }
 
             // Can't move down, or down-left, can it move down-right?
-            if (grid[grain.x+1][grain.y+1] == '.') {
-                grain.move(1,1);
+            if (!grid.isBlocked(x+1, y+1)) {
+                x++;
+                y++;
                 continue;
             }
 
             // Can't move, so update the grid with this grains resting place
-            grid[grain.x][grain.y] = 'o';
-            System.out.println("Grain came to rest at " + grain);
-            stopped = true;
+            settle(grid, x, y);
             return false;
-
         }
-
-        return false;
-
     }
 
     // Returns true if the sand stopped at (500,0), false otherwise
     // Copy/paste from above, in real life would rework for the new requirements, but meh
-    private boolean dropSingleGrainPart2(char[][] grid) {
-        // Sand pours from (500,0)
-        Point grain = new Point(500,0);
-        boolean stopped = false;
-
-        while (!stopped) {
-            System.out.println("Grain at " + grain);
+    private boolean dropSingleGrainPart2(CaveGrid grid) {
+        int x = CaveGrid.SOURCE_X;
+        int y = CaveGrid.SOURCE_Y;
 
+        while (true) {
             // Can it move down?
-            if (grid[grain.x][grain.y+1] == '.') {
-                grain.move(0,1); // Move it down 1
+            if (!grid.isBlocked(x, y+1)) {
+                y++;
                 continue;
             }
 
             // Can't move down, can it move down-left?
-            if (grid[grain.x-1][grain.y+1] == '.') {
-                grain.move(-1,1);
+            if (!grid.isBlocked(x-1, y+1)) {
+                x--;
+                y++;
                 continue;
             }
 
             // Can't move down, or down-left, can it move down-right?
-            if (grid[grain.x+1][grain.y+1] == '.') {
-                grain.move(1,1);
+            if (!grid.isBlocked(x+1, y+1)) {
+                x++;
+                y++;
                 continue;
             }
 
             // Part 2 special case, we can't move, check if we're at 500,0
-            if (grain.x == 500 && grain.y == 0) {
+            if (x == CaveGrid.SOURCE_X && y == CaveGrid.SOURCE_Y) {
                 System.out.println("Totally full up");
                 return true;
             }
 
             // Can't move, so update the grid with this grains resting place
-            grid[grain.x][grain.y] = 'o';
-            System.out.println("Grain came to rest at " + grain);
-            stopped = true;
+            settle(grid, x, y);
             return false;
-
         }
-
-        return false;
-
     }
 
-    private char[][] buildGridPart2(List<String> inputLines) {
-        char[][] grid = buildGrid(inputLines);
+    private void settle(CaveGrid grid, int x, int y) {
+        grid.settle(x, y);
 
-        // Find the bottom Y, then fill out the grid past that.
-        int maxY = 0;
-        for (int x=0; x<grid.length; x++) {
-            for (int y=0; y<grid[0].length; y++) {
-                if (grid[x][y] == '#' && y > maxY) {
-                    maxY = y;
-                }
+        if (observer != null) {
+            batchXs[batchCount] = x;
+            batchYs[batchCount] = y;
+            batchCount++;
+            if (batchCount == batchXs.length) {
+                observer.grainsSettled(batchXs, batchYs, batchCount);
+                batchCount = 0;
             }
         }
+    }
 
-        // New floor
-        for (int x=0; x<grid.length; x++) {
-            grid[x][maxY+2] = '#';
+    // Flush whatever is left in the batch and let the observer know we're done, passes the result straight back
+    private int finishObserving(int result) {
+        if (observer != null) {
+            if (batchCount > 0) {
+                observer.grainsSettled(batchXs, batchYs, batchCount);
+                batchCount = 0;
+            }
+            observer.simulationFinished(result);
         }
 
-        return grid;
+        return result;
     }
 
-    private char[][] buildGrid(List<String> inputLines) {
-        char[][] rockGrid = new char[1000][1000];  // Eyeballing the max grid size from the input
-
-        // Initialize with dots as air
-        for (int x=0; x<rockGrid.length; x++) {
-            for (int y=0; y<rockGrid[0].length; y++) {
-                rockGrid[x][y] = '.';
-            }
-        }
+    // Each line is one rock path, eg 498,4 -> 498,6 -> 496,6
+    public List<List<Point>> parseRockPaths(List<String> inputLines) {
+        List<List<Point>> rockPaths = Lists.newArrayList();
 
         for (String line : inputLines) {
             List<Point> pointsInLine = Lists.newArrayList();
 
             for (String point : line.split(" -> ")) {
-                int x = Integer.parseInt(point.split(",")[0]);
-                int y = Integer.parseInt(point.split(",")[1]);
-                pointsInLine.add(new Point(x,y));
-            }
-
-            // Fill in grid with rocks from previous point to current point, starting a 1 so there is a previous
-            for (int i=1; i<pointsInLine.size(); i++) {
-                Point pStart = pointsInLine.get(i-1);
-                Point pEnd = pointsInLine.get(i);
-
-                // Vertical
-                if (pStart.x == pEnd.x) {
-                    // Iterate inclusive of the endpoint itself
-                    for (int y=0; y<=Math.abs(pStart.y - pEnd.y); y++) {
-                        int yFrom = Math.min(pStart.y, pEnd.y);
-                        System.out.println("Inserting Rock: (" + pStart.x + "," + (yFrom+y) + ")");
-                        rockGrid[pStart.x][yFrom+y] = '#';
-                    }
-                }
-
-                // Horizontal
-                else if (pStart.y == pEnd.y) {
-                    // Iterate inclusive of the endpoint itself
-                    for (int x=0; x<=Math.abs(pStart.x - pEnd.x); x++) {
-                        int xFrom = Math.min(pStart.x, pEnd.x);
-                        System.out.println("Inserting Rock: (" + (xFrom+x) + "," + pStart.y + ")");
-                        rockGrid[xFrom+x][pStart.y] = '#';
-                    }
-                }
+                String[] coordinates = point.split(",");
+                pointsInLine.add(new Point(Integer.parseInt(coordinates[0]), Integer.parseInt(coordinates[1])));
             }
 
+            rockPaths.add(pointsInLine);
         }
 
-        return rockGrid;
+        return rockPaths;
     }
 }
@@ -0,0 +1,15 @@
+package y2022.day14;
+
+/**
+ * Watches a SandDropper run without slowing it down.  Grains that come to rest are buffered by the dropper and handed
+ * over in batches, so the simulation loop never does any I/O itself.
+ */
+public interface SandObserver {
+    // The grains that came to rest since the last call, in the order they settled.  Only the first count entries are
+    // valid, and the arrays are reused for the next batch so copy anything you want to keep
+    void grainsSettled(int[] xs, int[] ys, int count);
+
+    // Called once the simulation stops, after the final batch
+    default void simulationFinished(int totalSettled) {
+    }
+}
@@ -0,0 +1,9 @@
+package y2022.day14;
+
+/**
+ * How SandDropper moves each grain, both give identical counts
+ */
+public enum SimulationMode {
+    FROM_SOURCE,   // Every grain starts at (500,0) and walks its whole fall
+    RESUME_PATH;   // Each grain picks up where the previous grain's path was last still open
+}
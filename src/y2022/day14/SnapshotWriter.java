@@ -0,0 +1,140 @@
+package y2022.day14;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * SandObserver that writes a picture of the cave every N settled grains (taken at the first batch boundary at or past
+ * each multiple of N), so big runs can be played back later.
+ *
+ * The simulation thread only copies the grid's bits, the run length encoding and the file writing happen on a single
+ * background thread.  Each snapshot in the file is:
+ *   int grainsSettled, int minX, int width, int height, then runs of (byte cell, varint length) in row major order
+ *   until width*height cells are covered, where cell is 0 air, 1 rock, 2 sand
+ */
+public class SnapshotWriter implements SandObserver, AutoCloseable {
+    private static final byte AIR = 0;
+    private static final byte ROCK = 1;
+    private static final byte SAND = 2;
+
+    private final CaveGrid grid;
+    private final int snapshotEvery;
+    private final long[] rock;  // Rock never changes, so copy it once
+    private final DataOutputStream out;
+    private final ExecutorService writerThread = Executors.newSingleThreadExecutor();
+    private final AtomicReference<IOException> writeFailure = new AtomicReference<>();
+
+    private int grainsSettled = 0;
+    private int nextSnapshotAt;
+
+    public SnapshotWriter(CaveGrid grid, int snapshotEvery, String fileName) throws IOException {
+        this.grid = grid;
+        this.snapshotEvery = snapshotEvery;
+        this.nextSnapshotAt = snapshotEvery;
+        this.rock = grid.copyRock();
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+    }
+
+    @Override
+    public void grainsSettled(int[] xs, int[] ys, int count) {
+        grainsSettled += count;
+
+        if (grainsSettled >= nextSnapshotAt) {
+            takeSnapshot();
+            while (nextSnapshotAt <= grainsSettled) {
+                nextSnapshotAt += snapshotEvery;
+            }
+        }
+    }
+
+    @Override
+    public void simulationFinished(int totalSettled) {
+        takeSnapshot();  // Always finish with the final state
+    }
+
+    private void takeSnapshot() {
+        long[] blocked = grid.copyBlocked();
+        int settledAtSnapshot = grainsSettled;
+
+        writerThread.submit(() -> {
+            try {
+                writeSnapshot(settledAtSnapshot, blocked);
+            } catch (IOException e) {
+                writeFailure.compareAndSet(null, e);
+            }
+        });
+    }
+
+    private void writeSnapshot(int settled, long[] blocked) throws IOException {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        int wordsPerRow = grid.getWordsPerRow();
+
+        out.writeInt(settled);
+        out.writeInt(grid.getMinX());
+        out.writeInt(width);
+        out.writeInt(height);
+
+        byte runCell = AIR;
+        int runLength = 0;
+        for (int y=0; y<height; y++) {
+            for (int col=0; col<width; col++) {
+                int word = y * wordsPerRow + (col >>> 6);
+                long bit = 1L << col;
+                byte cell = (rock[word] & bit) != 0 ? ROCK : (blocked[word] & bit) != 0 ? SAND : AIR;
+
+                if (cell != runCell && runLength > 0) {
+                    writeRun(runCell, runLength);
+                    runLength = 0;
+                }
+                runCell = cell;
+                runLength++;
+            }
+        }
+        writeRun(runCell, runLength);
+    }
+
+    private void writeRun(byte cell, int length) throws IOException {
+        out.writeByte(cell);
+
+        // Varint, 7 bits at a time, high bit set means more bytes follow
+        while ((length & ~0x7F) != 0) {
+            out.writeByte((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.writeByte(length);
+    }
+
+    // Waits for every queued snapshot to be written.  Closing the stream is the writer thread's last task, so even if we
+    // time out it's never closed while a snapshot is still being written, the thread finishes the file and closes it
+    @Override
+    public void close() throws IOException {
+        writerThread.submit(() -> {
+            try {
+                out.close();
+            } catch (IOException e) {
+                writeFailure.compareAndSet(null, e);
+            }
+        });
+        writerThread.shutdown();
+
+        try {
+            if (!writerThread.awaitTermination(1, TimeUnit.MINUTES)) {
+                throw new IOException("Timed out waiting for snapshots to be written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for snapshots to be written", e);
+        }
+
+        if (writeFailure.get() != null) {
+            throw writeFailure.get();
+        }
+    }
+}
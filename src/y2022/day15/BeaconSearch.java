@@ -1,14 +1,13 @@
 package y2022.day15;
 
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
-import utils.InputReader;
 import utils.Point;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -123,105 +122,81 @@ import java.util.regex.Pattern;
  *
  */
 public class BeaconSearch {
-    public static void main(String[] args) throws FileNotFoundException {
-        InputReader inputReader = new InputReader();
-        List<String> inputLines = inputReader.loadStringsFromFile("./src/y2022/day15/SampleBeaconInput.txt");
+    private static final Pattern COORDINATE_PATTERN = Pattern.compile("-?\\d+");
+
+    public static void main(String[] args) throws IOException {
+        SensorReadings sensorBeacons = SensorReadings.loadFromFile("./src/y2022/day15/SampleBeaconInput.txt");
+        //SensorReadings sensorBeacons = SensorReadings.loadFromFile("./src/y2022/day15/BeaconInput.txt");
 
         BeaconSearch searcher = new BeaconSearch();
-        Map<Point, Point> sensorBeacons = searcher.parseSensorBeaconPairs(inputLines);
 
         // Part 1
         //int numOverlaps = searcher.countSensorOverlapWithRow(sensorBeacons, 20); // Sample
         //int numOverlaps = searcher.countSensorOverlapWithRow(sensorBeacons, 2_000_000);
 
-        // Part 2
-        long tuningFreq = searcher.findTuningFreq(sensorBeacons, 20);  // Sample
-        System.out.println("Tuning frequency: " + tuningFreq);
+        // Part 2, time both strategies against the same parsed pairs
+        int maxGrid = 20;  // Sample
+        //int maxGrid = 4_000_000;
+        for (DistressSearchStrategy strategy : DistressSearchStrategy.values()) {
+            long startTimeNanos = System.nanoTime();
+            long tuningFreq = searcher.findTuningFreq(sensorBeacons, maxGrid, strategy);
+            long elapsedMillis = (System.nanoTime() - startTimeNanos) / 1_000_000;
+            System.out.println(strategy + " tuning frequency: " + tuningFreq + " in " + elapsedMillis + "ms");
+        }
     }
 
+    // Part 2 implementation
     public long findTuningFreq(Map<Point, Point> sensorBeacons, int maxGrid) {
-        long tuningFreq = 0;
-
-        Point foundPoint = null;
-
-        for (int i=0; i<=20; i++) {
-            System.out.println("\n\nRow: " + i);
-            foundPoint = findEmptySpaceInLine(sensorBeacons, i, maxGrid);
-            if (foundPoint != null) {
-                break;
-            }
-        }
-
-        if (foundPoint == null) {
-            throw new RuntimeException("Point not found");
-        }
-
-        tuningFreq = foundPoint.x * 4_000_000;
-
-        return tuningFreq;
+        return findTuningFreq(SensorReadings.fromPairs(sensorBeacons), maxGrid, DistressSearchStrategy.ROW_SWEEP);
     }
 
-    // Part 2 implementation
-    // Go row by row similar to part 1, trying to find a single point that is uncovered
-    // Return that point, or null if not found
-    private Point findEmptySpaceInLine(Map<Point, Point> sensorBeacons, int row, int maxGrid) {
-        Point foundPoint = null;
-        int numOverlaps = 0;
-        Set<Integer> rowPositionNoBeacon = Sets.newHashSet();
+    public long findTuningFreq(Map<Point, Point> sensorBeacons, int maxGrid, DistressSearchStrategy strategy) {
+        return findTuningFreq(SensorReadings.fromPairs(sensorBeacons), maxGrid, strategy);
+    }
 
-        for (Map.Entry<Point, Point> sensorBeacon : sensorBeacons.entrySet()) {
-            rowPositionNoBeacon.addAll(findOverlapRowWithMax(sensorBeacon.getKey(), sensorBeacon.getValue(), row, maxGrid));
+    public long findTuningFreq(SensorReadings readings, int maxGrid, DistressSearchStrategy strategy) {
+        if (strategy == DistressSearchStrategy.PERIMETER) {
+            return new PerimeterSearch(readings).findTuningFreq(maxGrid);
         }
 
-        System.out.println("All Overlaps: " + rowPositionNoBeacon.stream().sorted().toList().toString());
-        numOverlaps = rowPositionNoBeacon.size();
-        System.out.println("Num overlaps: " + numOverlaps);
-
-        return foundPoint;
+        return sweepRowsForTuningFreq(readings, maxGrid);
     }
 
-    // Part 2 has max grid
-    private Set<Integer> findOverlapRowWithMax(Point sensor, Point beacon, int row, int maxGrid) {
-        Set<Integer> overlaps = Sets.newHashSet();
-
-        int gridDistance = Math.abs(sensor.x - beacon.x) + Math.abs(sensor.y - beacon.y);  // Taxicab distance
-        int yDistance = Math.abs(sensor.y - row);
-        int xDistance = gridDistance - yDistance;  // Is this right???  TODO
-
-
-        System.out.println("Sensor " + sensor + ", beacon " + beacon + ", gridDistance=" + gridDistance + ", yDistance=" +
-                yDistance + ", xDistance=" + xDistance);
+    // Sweep every row from 0 to maxGrid in parallel looking for the single uncovered cell
+    private long sweepRowsForTuningFreq(SensorReadings readings, int maxGrid) {
+        AtomicLong found = new AtomicLong(RowSweepTask.NOT_FOUND);
 
+        ForkJoinPool.commonPool().invoke(new RowSweepTask(readings, 0, maxGrid, maxGrid, found));
 
-        // Short cut if there's no insection with the row at all
-        if (yDistance > gridDistance) {
-            return overlaps;
+        if (found.get() == RowSweepTask.NOT_FOUND) {
+            throw new RuntimeException("Point not found");
         }
 
-        // Generate overlaps with row, cap at max grid
-        // Not sure if adding branches here helps or hurts processing time at this point...
-        for (int i=0; i<=xDistance; i++) {
-            int newpx = sensor.x + i;
-            if (newpx <= maxGrid && newpx >=0){
-                overlaps.add(newpx);
-            }
-            int newnx = sensor.x - i;
-            if (newnx >= 0  && newnx <= maxGrid) {
-                overlaps.add(newnx);
-            }
-        }
+        return found.get();
+    }
 
-        System.out.println("Capped Overlaps: " + overlaps.stream().sorted().toList().toString());
+    // Build once, then ask as many ad-hoc point coverage questions as you like
+    public SensorIndex buildSensorIndex(Map<Point, Point> sensorBeacons) {
+        return buildSensorIndex(SensorReadings.fromPairs(sensorBeacons));
+    }
+
+    public SensorIndex buildSensorIndex(SensorReadings readings) {
+        return new SensorIndex(readings);
+    }
 
-        return overlaps;
+    // Multiply as longs, x * 4,000,000 overflows an int for anything past x=536
+    static long tuningFrequency(int x, int y) {
+        return (long)x * 4_000_000 + y;
     }
 
+    // Kept for callers that want the pairs as Points, SensorReadings.parse is the fast path and what main uses
     public Map<Point, Point> parseSensorBeaconPairs(List<String> inputLines) {
         Map<Point, Point> pairs = Maps.newHashMap();
 
         for (String line : inputLines) {
-            Point sensor = getPointFromString(line.split(":")[0]);
-            Point beacon = getPointFromString(line.split(":")[1]);
+            Matcher matcher = COORDINATE_PATTERN.matcher(line);
+            Point sensor = new Point(nextCoordinate(matcher), nextCoordinate(matcher));
+            Point beacon = new Point(nextCoordinate(matcher), nextCoordinate(matcher));
             pairs.put(sensor, beacon);
         }
 
@@ -229,75 +204,44 @@ public class BeaconSearch {
     }
 
     // Sensor at x=2, y=18: closest beacon is at x=-2, y=15
-    // Expecting to receive result of a split on the ":"
-    //    Sensor at x=2, y=18 or  closest beacon is at x=-2, y=15
-    private Point getPointFromString(String s) {
-        Pattern pattern = Pattern.compile("\\d+");
-        Matcher matcher = pattern.matcher(s);
-
-        matcher.find();
-        int x = Integer.parseInt(matcher.group());
-        matcher.find();
-        int y = Integer.parseInt(matcher.group());
-
-        Point p = new Point(x,y);
-        System.out.println("Created point: " + p);
+    // Coordinates can be negative, so the sign has to be part of the match
+    private int nextCoordinate(Matcher matcher) {
+        if (!matcher.find()) {
+            throw new RuntimeException("Sensor line is missing a coordinate");
+        }
 
-        return p;
+        return Integer.parseInt(matcher.group());
     }
 
     // Part 1 implementation
     public int countSensorOverlapWithRow(Map<Point, Point> sensorBeacons, int row) {
-        int numOverlaps = 0;
-        Set<Integer> rowPositionNoBeacon = Sets.newHashSet();
+        return countSensorOverlapWithRow(SensorReadings.fromPairs(sensorBeacons), row);
+    }
 
-        for (Map.Entry<Point, Point> sensorBeacon : sensorBeacons.entrySet()) {
-            rowPositionNoBeacon.addAll(findOverlapRow(sensorBeacon.getKey(), sensorBeacon.getValue(), row));
-        }
+    public int countSensorOverlapWithRow(SensorReadings readings, int row) {
+        long[] spans = readings.newSpanBuffer();
+        int numSpans = readings.mergeRowCoverage(row, Integer.MIN_VALUE, Integer.MAX_VALUE, spans);
 
-        System.out.println("\nAll Overlaps: " + rowPositionNoBeacon.stream().sorted().toList().toString());
-        numOverlaps = rowPositionNoBeacon.size();
+        long numOverlaps = 0;
+        for (int i=0; i<numSpans; i++) {
+            numOverlaps += (long)SensorReadings.spanHi(spans[i]) - SensorReadings.spanLo(spans[i]) + 1;
+        }
         System.out.println("Num overlaps before removing: " + numOverlaps);
 
-        // Remember the row can contain beacons, so iterate a second time to remove them
-        for (Point beacon : sensorBeacons.values()) {
-            if (beacon.y == row) {
-                rowPositionNoBeacon.remove(beacon.x);
+        // Remember the row can contain beacons, walk the sorted beacon x's alongside the sorted spans to remove them
+        int[] beaconXs = readings.beaconXsOnRow(row);
+        int span = 0;
+        for (int beaconX : beaconXs) {
+            while (span < numSpans && SensorReadings.spanHi(spans[span]) < beaconX) {
+                span++;
+            }
+            if (span < numSpans && SensorReadings.spanLo(spans[span]) <= beaconX) {
+                numOverlaps--;
             }
         }
-
-        System.out.println("\nAll Overlaps after removing beacons: " + rowPositionNoBeacon.stream().sorted().toList().toString());
-        numOverlaps = rowPositionNoBeacon.size();
         System.out.println("Num overlaps after removing: " + numOverlaps);
 
-        return numOverlaps;
-    }
-
-    // Part 1 implementation
-    private Set<Integer> findOverlapRow(Point sensor, Point beacon, int row) {
-        Set<Integer> overlaps = Sets.newHashSet();
-
-        int gridDistance = Math.abs(sensor.x - beacon.x) + Math.abs(sensor.y - beacon.y);  // Taxicab distance
-        int yDistance = Math.abs(sensor.y - row);
-        int xDistance = gridDistance - yDistance;
-
-        System.out.println("Sensor " + sensor + ", beacon " + beacon + ", gridDistance=" + gridDistance + ", yDistance=" +
-                yDistance + ", xDistance=" + xDistance);
-
-        // Short cut if there's no insection with the row at all
-        if (yDistance > gridDistance) {
-            return overlaps;
-        }
-
-        // Generate overlaps with row
-        for (int i=0; i<=xDistance; i++) {
-            overlaps.add(sensor.x + i);
-            overlaps.add(sensor.x - i);
-        }
-
-        System.out.println("Overlaps: " + overlaps.stream().sorted().toList().toString());
-
-        return overlaps;
+        return Math.toIntExact(numOverlaps);
     }
 
 }
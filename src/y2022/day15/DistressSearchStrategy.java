@@ -0,0 +1,9 @@
+package y2022.day15;
+
+/**
+ * How part 2 should hunt for the distress beacon, both give the same answer so we can benchmark one against the other
+ */
+public enum DistressSearchStrategy {
+    ROW_SWEEP,  // Check the merged row spans of every row in the grid, see RowSweepTask
+    PERIMETER;  // Only check where the lines just outside the sensor diamonds cross, see PerimeterSearch
+}
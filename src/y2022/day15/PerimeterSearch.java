@@ -0,0 +1,205 @@
+package y2022.day15;
+
+import java.util.Arrays;
+
+/**
+ * Part 2 without scanning any rows.
+ *
+ * Rotate the grid 45 degrees with u = x+y and v = x-y, and each sensor's diamond becomes an axis aligned square
+ * |u - su| <= r, |v - sv| <= r.  The distress beacon is the only uncovered cell, so it sits just outside (r+1 away
+ * from) at least one diamond, ie on one of the u or v lines just outside a sensor's radius.
+ *
+ * Usually it's hemmed in on all sides and sits where a u line crosses a v line, best of all where two diamonds leave a
+ * one cell wide diagonal channel between them (one's u+r+1 equals the other's u-r-1), so we try the channel crossings
+ * first, then every just-outside crossing, then where the just-outside lines cross the edges of the grid.  Those are
+ * all O(sensors^2) candidates checked against the SensorIndex with no dependence on the size of the grid.
+ *
+ * That isn't guaranteed though, the beacon can be boxed in by diamonds that only give it lines in one direction, so
+ * if none of the crossings are free we walk the just-outside ring of every diamond, clipped to the grid, which always
+ * finds it but costs the sum of the radii.
+ */
+public class PerimeterSearch {
+    private final SensorReadings readings;
+    private final SensorIndex index;
+
+    public PerimeterSearch(SensorReadings readings) {
+        this.readings = readings;
+        this.index = new SensorIndex(readings);
+    }
+
+    // Returns the tuning frequency of the single uncovered cell within [0, maxGrid] on both axes
+    public long findTuningFreq(int maxGrid) {
+        long found = searchCrossings(channelLines(true), channelLines(false), maxGrid);
+        if (found != RowSweepTask.NOT_FOUND) {
+            return found;
+        }
+
+        found = searchCrossings(outsideLines(true), outsideLines(false), maxGrid);
+        if (found != RowSweepTask.NOT_FOUND) {
+            return found;
+        }
+
+        // A beacon on the edge of the grid only has diamonds on one side, so try where the lines meet the edges
+        found = searchBorderCrossings(maxGrid);
+        if (found != RowSweepTask.NOT_FOUND) {
+            return found;
+        }
+
+        found = searchRings(maxGrid);
+        if (found != RowSweepTask.NOT_FOUND) {
+            return found;
+        }
+
+        throw new RuntimeException("Point not found");
+    }
+
+    // Where every just-outside line crosses x=0, x=maxGrid, y=0 and y=maxGrid, corners included
+    private long searchBorderCrossings(int maxGrid) {
+        long[] uLines = outsideLines(true);
+        long[] vLines = outsideLines(false);
+        long[] edges = {0, maxGrid};
+
+        for (long edge : edges) {
+            // Corners first, a 1 cell grid has no lines to cross at all
+            for (long other : edges) {
+                long found = checkCell(edge, other, maxGrid);
+                if (found != RowSweepTask.NOT_FOUND) {
+                    return found;
+                }
+            }
+
+            for (long u : uLines) {
+                long found = checkCell(edge, u - edge, maxGrid);      // x = edge
+                if (found == RowSweepTask.NOT_FOUND) {
+                    found = checkCell(u - edge, edge, maxGrid);       // y = edge
+                }
+                if (found != RowSweepTask.NOT_FOUND) {
+                    return found;
+                }
+            }
+
+            for (long v : vLines) {
+                long found = checkCell(edge, edge - v, maxGrid);      // x = edge
+                if (found == RowSweepTask.NOT_FOUND) {
+                    found = checkCell(v + edge, edge, maxGrid);       // y = edge
+                }
+                if (found != RowSweepTask.NOT_FOUND) {
+                    return found;
+                }
+            }
+        }
+
+        return RowSweepTask.NOT_FOUND;
+    }
+
+    // Every cell just outside every diamond that's inside the grid.  Any cell next to the beacon is covered by some
+    // diamond, and the beacon isn't, so the beacon is on that diamond's ring
+    private long searchRings(int maxGrid) {
+        for (int i=0; i<readings.count; i++) {
+            long sx = readings.sensorX[i];
+            long sy = readings.sensorY[i];
+            long ring = readings.radius[i] + 1L;
+
+            // Only the dx where sx+dx or sx-dx lands in the grid
+            long fromDx = Math.max(0, Math.min(-sx, sx - maxGrid));
+            long toDx = Math.min(ring, Math.max(maxGrid - sx, sx));
+            for (long dx=fromDx; dx<=toDx; dx++) {
+                long dy = ring - dx;
+                long found = checkCell(sx + dx, sy + dy, maxGrid);
+                if (found == RowSweepTask.NOT_FOUND) {
+                    found = checkCell(sx + dx, sy - dy, maxGrid);
+                }
+                if (found == RowSweepTask.NOT_FOUND) {
+                    found = checkCell(sx - dx, sy + dy, maxGrid);
+                }
+                if (found == RowSweepTask.NOT_FOUND) {
+                    found = checkCell(sx - dx, sy - dy, maxGrid);
+                }
+                if (found != RowSweepTask.NOT_FOUND) {
+                    return found;
+                }
+            }
+        }
+
+        return RowSweepTask.NOT_FOUND;
+    }
+
+    // Tuning frequency of (x,y) if it's in the grid and uncovered, otherwise NOT_FOUND
+    private long checkCell(long x, long y, int maxGrid) {
+        if (x < 0 || y < 0 || x > maxGrid || y > maxGrid || index.isCovered((int)x, (int)y)) {
+            return RowSweepTask.NOT_FOUND;
+        }
+
+        return BeaconSearch.tuningFrequency((int)x, (int)y);
+    }
+
+    // Lines (in u if isU, else v) sitting in a one cell channel between two diamonds, sorted and distinct
+    private long[] channelLines(boolean isU) {
+        int n = readings.count;
+        long[] lines = new long[n * n];
+        int numLines = 0;
+
+        for (int i=0; i<n; i++) {
+            for (int j=0; j<n; j++) {
+                long above = rotated(i, isU) + readings.radius[i] + 1;
+                long below = rotated(j, isU) - readings.radius[j] - 1;
+                if (i != j && above == below) {
+                    lines[numLines++] = above;
+                }
+            }
+        }
+
+        return sortedDistinct(lines, numLines);
+    }
+
+    // Every line just outside every diamond (in u if isU, else v), sorted and distinct
+    private long[] outsideLines(boolean isU) {
+        int n = readings.count;
+        long[] lines = new long[n * 2];
+
+        for (int i=0; i<n; i++) {
+            lines[i * 2] = rotated(i, isU) + readings.radius[i] + 1;
+            lines[i * 2 + 1] = rotated(i, isU) - readings.radius[i] - 1;
+        }
+
+        return sortedDistinct(lines, lines.length);
+    }
+
+    // Try every u/v crossing, returns the tuning frequency of the first uncovered in-grid one, or NOT_FOUND
+    private long searchCrossings(long[] uLines, long[] vLines, int maxGrid) {
+        for (long u : uLines) {
+            for (long v : vLines) {
+                // Crossings with an odd u+v land between cells
+                if (((u + v) & 1) != 0) {
+                    continue;
+                }
+
+                long found = checkCell((u + v) / 2, (u - v) / 2, maxGrid);
+                if (found != RowSweepTask.NOT_FOUND) {
+                    return found;
+                }
+            }
+        }
+
+        return RowSweepTask.NOT_FOUND;
+    }
+
+    private long rotated(int sensor, boolean isU) {
+        long x = readings.sensorX[sensor];
+        long y = readings.sensorY[sensor];
+        return isU ? x + y : x - y;
+    }
+
+    private static long[] sortedDistinct(long[] values, int n) {
+        Arrays.sort(values, 0, n);
+
+        int distinct = 0;
+        for (int i=0; i<n; i++) {
+            if (distinct == 0 || values[distinct-1] != values[i]) {
+                values[distinct++] = values[i];
+            }
+        }
+
+        return Arrays.copyOf(values, distinct);
+    }
+}
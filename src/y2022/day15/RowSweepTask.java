@@ -0,0 +1,63 @@
+package y2022.day15;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Part 2 row sweep, run on a ForkJoinPool.  The row range is split in half until it is small enough to just scan, and
+ * each scanned row is answered from the merged row spans rather than cell by cell.
+ * The first task to find the uncovered cell stores it in found, every other task checks found before each row and
+ * bails out once it is set, so the remaining rows are never scanned.
+ */
+class RowSweepTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    static final long NOT_FOUND = -1;
+    private static final int ROWS_PER_TASK = 4096;
+
+    private final SensorReadings readings;
+    private final int fromRow;  // Inclusive
+    private final int toRow;    // Inclusive
+    private final int maxGrid;
+    private final AtomicLong found;  // Tuning frequency of the uncovered cell, or NOT_FOUND
+
+    RowSweepTask(SensorReadings readings, int fromRow, int toRow, int maxGrid, AtomicLong found) {
+        this.readings = readings;
+        this.fromRow = fromRow;
+        this.toRow = toRow;
+        this.maxGrid = maxGrid;
+        this.found = found;
+    }
+
+    @Override
+    protected void compute() {
+        if (found.get() != NOT_FOUND) {
+            return;
+        }
+
+        if (toRow - fromRow < ROWS_PER_TASK) {
+            sweepRows();
+            return;
+        }
+
+        int midRow = fromRow + (toRow - fromRow) / 2;
+        invokeAll(new RowSweepTask(readings, fromRow, midRow, maxGrid, found),
+                new RowSweepTask(readings, midRow + 1, toRow, maxGrid, found));
+    }
+
+    private void sweepRows() {
+        long[] spans = readings.newSpanBuffer();  // One scratch buffer for every row in this task
+
+        for (int row=fromRow; row<=toRow; row++) {
+            if (found.get() != NOT_FOUND) {
+                return;
+            }
+
+            int x = readings.firstUncoveredX(row, 0, maxGrid, spans);
+            if (x != SensorReadings.FULLY_COVERED) {
+                found.compareAndSet(NOT_FOUND, BeaconSearch.tuningFrequency(x, row));
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package y2022.day15;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Answers "is this point covered by any sensor" without walking every sensor or building a row set.
+ *
+ * In rotated space (u = x+y, v = x-y) each sensor's diamond is an axis aligned square, so we lay a coarse bucket grid
+ * over the bounding box of all the squares and list, per bucket, the sensors whose square overlaps it.  A query rotates
+ * the point, finds its bucket, and only checks the handful of sensors listed there.
+ * Bucket lists are stored flattened (bucketStart/bucketSensors) so the whole index is a few int arrays.
+ */
+public class SensorIndex {
+    public static final int NO_SENSOR = -1;
+
+    private final SensorReadings readings;
+    private final long minU, minV;
+    private final long bucketWidthU, bucketWidthV;
+    private final int bucketsPerAxis;
+    private final int[] bucketStart;    // Sensors in bucket b are bucketSensors[bucketStart[b]] until bucketStart[b+1]
+    private final int[] bucketSensors;
+
+    public SensorIndex(SensorReadings readings) {
+        this.readings = readings;
+        int n = readings.count;
+
+        long loU = Long.MAX_VALUE, hiU = Long.MIN_VALUE, loV = Long.MAX_VALUE, hiV = Long.MIN_VALUE;
+        for (int i=0; i<n; i++) {
+            loU = Math.min(loU, u(i) - readings.radius[i]);
+            hiU = Math.max(hiU, u(i) + readings.radius[i]);
+            loV = Math.min(loV, v(i) - readings.radius[i]);
+            hiV = Math.max(hiV, v(i) + readings.radius[i]);
+        }
+
+        // Roughly 4 buckets per sensor keeps each bucket's list short without blowing up the index for big inputs
+        bucketsPerAxis = Math.max(1, 2 * (int)Math.ceil(Math.sqrt(n)));
+        minU = n == 0 ? 0 : loU;
+        minV = n == 0 ? 0 : loV;
+        bucketWidthU = n == 0 ? 1 : (hiU - loU) / bucketsPerAxis + 1;
+        bucketWidthV = n == 0 ? 1 : (hiV - loV) / bucketsPerAxis + 1;
+
+        // First pass counts the entries per bucket, second pass fills them in
+        int numBuckets = bucketsPerAxis * bucketsPerAxis;
+        bucketStart = new int[numBuckets + 1];
+        for (int i=0; i<n; i++) {
+            forEachBucket(i, b -> bucketStart[b + 1]++);
+        }
+        for (int b=0; b<numBuckets; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+
+        bucketSensors = new int[bucketStart[numBuckets]];
+        int[] fill = new int[numBuckets];
+        for (int i=0; i<n; i++) {
+            int sensor = i;
+            forEachBucket(i, b -> bucketSensors[bucketStart[b] + fill[b]++] = sensor);
+        }
+    }
+
+    public boolean isCovered(int x, int y) {
+        return coveringSensor(x, y) != NO_SENSOR;
+    }
+
+    // Returns the index (into SensorReadings) of a sensor whose diamond covers (x,y), or NO_SENSOR
+    public int coveringSensor(int x, int y) {
+        long pu = (long)x + y;
+        long pv = (long)x - y;
+
+        long bu = Math.floorDiv(pu - minU, bucketWidthU);
+        long bv = Math.floorDiv(pv - minV, bucketWidthV);
+        if (bu < 0 || bv < 0 || bu >= bucketsPerAxis || bv >= bucketsPerAxis) {
+            return NO_SENSOR;
+        }
+
+        int bucket = (int)bu * bucketsPerAxis + (int)bv;
+        for (int k=bucketStart[bucket]; k<bucketStart[bucket + 1]; k++) {
+            int i = bucketSensors[k];
+            if (Math.abs(pu - u(i)) <= readings.radius[i] && Math.abs(pv - v(i)) <= readings.radius[i]) {
+                return i;
+            }
+        }
+
+        return NO_SENSOR;
+    }
+
+    // Returns the first x >= fromX on the row that no sensor covers.  Whenever we land in a diamond we jump straight to
+    // the cell just past its right edge on this row, so this takes at most one step per sensor
+    public int nextUncoveredX(int row, int fromX) {
+        long x = fromX;
+
+        while (x <= Integer.MAX_VALUE) {
+            int sensor = coveringSensor((int)x, row);
+            if (sensor == NO_SENSOR) {
+                return (int)x;
+            }
+
+            int xDistance = readings.radius[sensor] - Math.abs(readings.sensorY[sensor] - row);
+            x = (long)readings.sensorX[sensor] + xDistance + 1;
+        }
+
+        return SensorReadings.FULLY_COVERED;
+    }
+
+    // Calls bucketAction with every bucket the sensor's rotated square overlaps
+    private void forEachBucket(int sensor, IntConsumer bucketAction) {
+        int r = readings.radius[sensor];
+        int fromU = (int)((u(sensor) - r - minU) / bucketWidthU);
+        int toU = (int)((u(sensor) + r - minU) / bucketWidthU);
+        int fromV = (int)((v(sensor) - r - minV) / bucketWidthV);
+        int toV = (int)((v(sensor) + r - minV) / bucketWidthV);
+
+        for (int bu=fromU; bu<=toU; bu++) {
+            for (int bv=fromV; bv<=toV; bv++) {
+                bucketAction.accept(bu * bucketsPerAxis + bv);
+            }
+        }
+    }
+
+    private long u(int sensor) {
+        return (long)readings.sensorX[sensor] + readings.sensorY[sensor];
+    }
+
+    private long v(int sensor) {
+        return (long)readings.sensorX[sensor] - readings.sensorY[sensor];
+    }
+}
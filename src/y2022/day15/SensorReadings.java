@@ -0,0 +1,227 @@
+package y2022.day15;
+
+import utils.Point;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * All the sensor/beacon pairs from the report held as parallel primitive arrays, index i is the i'th sensor.
+ * radius[i] is the taxicab distance from sensor i to its closest beacon, ie the size of its no-beacon diamond.
+ *
+ * Row coverage is answered as merged closed [lo, hi] spans, packed into a long as lo in the high 32 bits and hi in the
+ * low 32 bits, so sorting the packed longs sorts the spans by lo without allocating any span objects.
+ */
+public class SensorReadings {
+    public static final int FULLY_COVERED = Integer.MIN_VALUE;  // Returned by firstUncoveredX when the row has no gap
+
+    final int count;
+    final int[] sensorX;
+    final int[] sensorY;
+    final int[] beaconX;
+    final int[] beaconY;
+    final int[] radius;
+
+    public SensorReadings(int[] sensorX, int[] sensorY, int[] beaconX, int[] beaconY) {
+        this.count = sensorX.length;
+        this.sensorX = sensorX;
+        this.sensorY = sensorY;
+        this.beaconX = beaconX;
+        this.beaconY = beaconY;
+        this.radius = new int[count];
+
+        for (int i=0; i<count; i++) {
+            radius[i] = Math.abs(sensorX[i] - beaconX[i]) + Math.abs(sensorY[i] - beaconY[i]);  // Taxicab distance
+        }
+    }
+
+    public static SensorReadings fromPairs(Map<Point, Point> sensorBeacons) {
+        int n = sensorBeacons.size();
+        int[] sx = new int[n];
+        int[] sy = new int[n];
+        int[] bx = new int[n];
+        int[] by = new int[n];
+
+        int i = 0;
+        for (Map.Entry<Point, Point> sensorBeacon : sensorBeacons.entrySet()) {
+            sx[i] = sensorBeacon.getKey().x;
+            sy[i] = sensorBeacon.getKey().y;
+            bx[i] = sensorBeacon.getValue().x;
+            by[i] = sensorBeacon.getValue().y;
+            i++;
+        }
+
+        return new SensorReadings(sx, sy, bx, by);
+    }
+
+    public static SensorReadings loadFromFile(String fileName) throws IOException {
+        return parse(Files.readAllBytes(Path.of(fileName)));
+    }
+
+    // Sensor at x=2, y=18: closest beacon is at x=-2, y=15
+    // Single pass over the raw bytes, the only digits on a line are the four coordinates so we just pull out every
+    // (optionally negative) number in order and take them four at a time as sx, sy, bx, by
+    public static SensorReadings parse(byte[] input) {
+        int[] numbers = new int[64];
+        int numNumbers = 0;
+
+        int i = 0;
+        while (i < input.length) {
+            byte b = input[i];
+            boolean negative = b == '-' && i+1 < input.length && isDigit(input[i+1]);
+            if (!negative && !isDigit(b)) {
+                i++;
+                continue;
+            }
+
+            if (negative) {
+                i++;
+            }
+            int value = 0;
+            while (i < input.length && isDigit(input[i])) {
+                value = value * 10 + (input[i] - '0');
+                i++;
+            }
+
+            if (numNumbers == numbers.length) {
+                numbers = Arrays.copyOf(numbers, numbers.length * 2);
+            }
+            numbers[numNumbers++] = negative ? -value : value;
+        }
+
+        if (numNumbers % 4 != 0) {
+            throw new RuntimeException("Expected 4 coordinates per sensor line, found " + numNumbers + " numbers");
+        }
+
+        int n = numNumbers / 4;
+        int[] sx = new int[n];
+        int[] sy = new int[n];
+        int[] bx = new int[n];
+        int[] by = new int[n];
+        for (int s=0; s<n; s++) {
+            sx[s] = numbers[s * 4];
+            sy[s] = numbers[s * 4 + 1];
+            bx[s] = numbers[s * 4 + 2];
+            by[s] = numbers[s * 4 + 3];
+        }
+
+        return new SensorReadings(sx, sy, bx, by);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Scratch buffer big enough for mergeRowCoverage, allocate once and reuse it for every row
+    public long[] newSpanBuffer() {
+        return new long[count];
+    }
+
+    // Computes each sensor's span on the row, clipped to [minX, maxX], then sorts and merges them in place in spans.
+    // Touching spans (hi+1 == next lo) are merged too, so any gap between two returned spans is a real uncovered cell.
+    // Returns the number of merged spans written to the front of spans
+    public int mergeRowCoverage(int row, int minX, int maxX, long[] spans) {
+        int n = 0;
+
+        for (int i=0; i<count; i++) {
+            int xDistance = radius[i] - Math.abs(sensorY[i] - row);
+
+            // Short cut if there's no insection with the row at all
+            if (xDistance < 0) {
+                continue;
+            }
+
+            long lo = Math.max((long)sensorX[i] - xDistance, minX);
+            long hi = Math.min((long)sensorX[i] + xDistance, maxX);
+            if (lo > hi) {
+                continue;
+            }
+
+            spans[n++] = packSpan((int)lo, (int)hi);
+        }
+
+        if (n == 0) {
+            return 0;
+        }
+
+        Arrays.sort(spans, 0, n);
+
+        // Classic interval merge, write pointer trails the read pointer
+        int merged = 0;
+        int curLo = spanLo(spans[0]);
+        int curHi = spanHi(spans[0]);
+        for (int i=1; i<n; i++) {
+            int lo = spanLo(spans[i]);
+            int hi = spanHi(spans[i]);
+
+            if ((long)lo <= (long)curHi + 1) {
+                curHi = Math.max(curHi, hi);
+            } else {
+                spans[merged++] = packSpan(curLo, curHi);
+                curLo = lo;
+                curHi = hi;
+            }
+        }
+        spans[merged++] = packSpan(curLo, curHi);
+
+        return merged;
+    }
+
+    // Returns the lowest x in [minX, maxX] on the row that no sensor covers, or FULLY_COVERED if there isn't one
+    // spans is just scratch space, see newSpanBuffer
+    public int firstUncoveredX(int row, int minX, int maxX, long[] spans) {
+        int numSpans = mergeRowCoverage(row, minX, maxX, spans);
+
+        // Spans are merged and clipped, so either the first span doesn't start at minX, or the cell after it is free
+        if (numSpans == 0 || spanLo(spans[0]) > minX) {
+            return minX;
+        }
+        if (spanHi(spans[0]) < maxX) {
+            return spanHi(spans[0]) + 1;
+        }
+
+        return FULLY_COVERED;
+    }
+
+    // Returns the sorted, distinct x positions of the beacons sitting on the row
+    public int[] beaconXsOnRow(int row) {
+        int n = 0;
+        int[] xs = new int[count];
+
+        for (int i=0; i<count; i++) {
+            if (beaconY[i] == row) {
+                xs[n++] = beaconX[i];
+            }
+        }
+
+        Arrays.sort(xs, 0, n);
+
+        int distinct = 0;
+        for (int i=0; i<n; i++) {
+            if (distinct == 0 || xs[distinct-1] != xs[i]) {
+                xs[distinct++] = xs[i];
+            }
+        }
+
+        return Arrays.copyOf(xs, distinct);
+    }
+
+    static long packSpan(int lo, int hi) {
+        return ((long)lo << 32) | (hi & 0xFFFF_FFFFL);
+    }
+
+    static int spanLo(long span) {
+        return (int)(span >> 32);
+    }
+
+    static int spanHi(long span) {
+        return (int)span;
+    }
+}
@@ -0,0 +1,62 @@
+package y2022.day12;
+
+import org.junit.Test;
+import utils.InputReader;
+import utils.Point;
+
+import java.io.FileNotFoundException;
+
+import static org.junit.Assert.*;
+
+public class MapSearchTest {
+
+    private char[][] loadHeightMap(MapSearch searcher, String fileName) throws FileNotFoundException {
+        return searcher.getHeightMap(new InputReader().loadStringsFromFile("./src/y2022/day12/" + fileName));
+    }
+
+    // Forwards from S over the SearchNode graph, checked against the grid graph and the predecessor path
+    private void assertPart1Agrees(String fileName, int expected) throws FileNotFoundException {
+        MapSearch searcher = new MapSearch();
+        char[][] heightMap = loadHeightMap(searcher, fileName);
+        Point startPoint = searcher.buildGraph(heightMap);
+        assertEquals(expected, (int)searcher.outputShortestPathForStartingPosition(startPoint));
+
+        Graph forward = searcher.buildSearchNodeGraph(heightMap, false);
+        SearchNode end = forward.getNode(searcher.getEndPoint());
+        assertEquals(expected, (int)forward.calculateShortestPathWeightFromSource(forward.getNode(startPoint), end));
+        assertEquals(expected, forward.getShortestPath(end).size() - 1);  // The path includes both ends
+    }
+
+    // One search back from E over the reversed SearchNode graph, best over every 'a' cell
+    private void assertPart2Agrees(String fileName, int expected) throws FileNotFoundException {
+        MapSearch searcher = new MapSearch();
+        char[][] heightMap = loadHeightMap(searcher, fileName);
+        assertEquals(expected, searcher.shortestPathFromAnyStart(heightMap, searcher.distancesToEnd(heightMap)));
+
+        Graph reversed = searcher.buildSearchNodeGraph(heightMap, true);
+        SearchNode end = reversed.getNode(searcher.getEndPoint());
+        reversed.calculateShortestPathWeightFromSource(end, end);  // Settles every node reachable from E
+
+        int shortestFromAnyStart = MapSearch.UNREACHABLE;
+        for (int r=0; r<heightMap.length; r++) {
+            for (int c=0; c<heightMap[0].length; c++) {
+                if (heightMap[r][c] == 'a') {
+                    shortestFromAnyStart = Math.min(shortestFromAnyStart, reversed.getNode(new Point(r, c)).getShorestPathWeight());
+                }
+            }
+        }
+        assertEquals(expected, shortestFromAnyStart);
+    }
+
+    @Test
+    public void searchNodeGraphAgreesOnSampleMap() throws FileNotFoundException {
+        assertPart1Agrees("SampleMap.txt", 31);
+        assertPart2Agrees("SampleMap.txt", 29);
+    }
+
+    @Test
+    public void searchNodeGraphAgreesOnFullMap() throws FileNotFoundException {
+        assertPart1Agrees("FullMap.txt", 380);
+        assertPart2Agrees("FullMap.txt", 375);
+    }
+}
@@ -0,0 +1,80 @@
+package y2022.day15;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PerimeterSearchTest {
+
+    // Beacons sit radius away along x, so each sensor's diamond is exactly the radius given
+    private SensorReadings readings(int[] xs, int[] ys, int[] radii) {
+        int[] bx = new int[xs.length];
+        for (int i=0; i<xs.length; i++) {
+            bx[i] = xs[i] + radii[i];
+        }
+        return new SensorReadings(xs, ys, bx, ys.clone());
+    }
+
+    // Checks every cell, returns the tuning frequency of the only uncovered one, or NOT_FOUND if there isn't exactly one
+    private long bruteForce(SensorReadings readings, int maxGrid) {
+        long found = RowSweepTask.NOT_FOUND;
+        for (int x=0; x<=maxGrid; x++) {
+            for (int y=0; y<=maxGrid; y++) {
+                boolean covered = false;
+                for (int i=0; i<readings.count && !covered; i++) {
+                    covered = Math.abs(readings.sensorX[i] - x) + Math.abs(readings.sensorY[i] - y) <= readings.radius[i];
+                }
+
+                if (!covered) {
+                    if (found != RowSweepTask.NOT_FOUND) {
+                        return RowSweepTask.NOT_FOUND;
+                    }
+                    found = BeaconSearch.tuningFrequency(x, y);
+                }
+            }
+        }
+
+        return found;
+    }
+
+    @Test
+    public void findsGapOnlyReachedByLinesInOneDirection() {
+        // Both diamonds touching (3,3) only give it a v line, no u/v crossing lands on it
+        SensorReadings readings = readings(new int[] {-1, -1, 10, 8, 8}, new int[] {7, -1, 8, -3, -1}, new int[] {7, 6, 10, 7, 8});
+
+        assertEquals(BeaconSearch.tuningFrequency(3, 3), bruteForce(readings, 7));
+        assertEquals(BeaconSearch.tuningFrequency(3, 3), new PerimeterSearch(readings).findTuningFreq(7));
+    }
+
+    @Test
+    public void matchesBruteForceOnRandomLayouts() {
+        Random random = new Random(15);
+        int layoutsChecked = 0;
+
+        while (layoutsChecked < 500) {
+            int maxGrid = 1 + random.nextInt(12);
+            int numSensors = 1 + random.nextInt(6);
+            int[] xs = new int[numSensors];
+            int[] ys = new int[numSensors];
+            int[] radii = new int[numSensors];
+            for (int i=0; i<numSensors; i++) {
+                xs[i] = random.nextInt(maxGrid + 7) - 3;
+                ys[i] = random.nextInt(maxGrid + 7) - 3;
+                radii[i] = random.nextInt(maxGrid + 2);
+            }
+
+            SensorReadings readings = readings(xs, ys, radii);
+            long expected = bruteForce(readings, maxGrid);
+            if (expected == RowSweepTask.NOT_FOUND) {
+                continue;  // Only layouts with exactly one gap are valid puzzles
+            }
+
+            BeaconSearch search = new BeaconSearch();
+            assertEquals(expected, new PerimeterSearch(readings).findTuningFreq(maxGrid));
+            assertEquals(expected, search.findTuningFreq(readings, maxGrid, DistressSearchStrategy.ROW_SWEEP));
+            layoutsChecked++;
+        }
+    }
+}